@@ -0,0 +1,66 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import grid.KillerSudokuGrid;
+import grid.StdSudokuGrid;
+import grid.SudokuGrid;
+
+/**
+ * Grid microbenchmarks: parsing a game file with initGrid() and checking a
+ * solved grid with validate().
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GridBenchmark {
+
+	@Param({ "easy-std-99-01", "hard-std-99-01", "easy-killer-99-02" })
+	public String puzzle;
+
+	private String path;
+	private SudokuGrid solved;
+
+	@Setup
+	public void setup() throws IOException {
+		path = Puzzles.path(puzzle);
+
+		solved = Puzzles.load(puzzle);
+		boolean success = Puzzles.isKiller(puzzle) ? Puzzles.killerSolver("advanced").solve(solved)
+				: Puzzles.sudokuSolver("dancing-array").solve(solved);
+		if (!success)
+			throw new IllegalStateException("can't solve " + puzzle);
+	}
+
+	@Benchmark
+	public SudokuGrid initGrid() throws IOException {
+		SudokuGrid grid = Puzzles.isKiller(puzzle) ? new KillerSudokuGrid() : new StdSudokuGrid();
+		grid.initGrid(path);
+		return grid;
+	}
+
+	@Benchmark
+	public boolean validate() {
+		return solved.validate();
+	}
+} // end of class GridBenchmark
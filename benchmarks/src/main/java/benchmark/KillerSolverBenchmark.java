@@ -0,0 +1,61 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import grid.SudokuGrid;
+import solver.SudokuSolver;
+
+/**
+ * Solves each Killer sample game with each Killer Sudoku solver. The game is
+ * parsed once per trial, every invocation solves a fresh copy, so parsing is not
+ * part of the measured time.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KillerSolverBenchmark {
+
+	// hard-killer-99-01 takes seconds per solve, add it with -p puzzle=...
+	@Param({ "easy-killer-44-01", "easy-killer-99-01", "easy-killer-99-02", "easy-killer-99-03" })
+	public String puzzle;
+
+	@Param({ "backtracking", "advanced" })
+	public String solverType;
+
+	private SudokuGrid template;
+	private SudokuSolver solver;
+
+	@Setup
+	public void setup() throws IOException {
+		template = Puzzles.load(puzzle);
+		solver = Puzzles.killerSolver(solverType);
+	}
+
+	@Benchmark
+	public SudokuGrid solve() {
+		SudokuGrid grid = template.copy();
+		if (!solver.solve(grid))
+			throw new IllegalStateException(solverType + " failed to solve " + puzzle);
+		return grid;
+	}
+} // end of class KillerSolverBenchmark
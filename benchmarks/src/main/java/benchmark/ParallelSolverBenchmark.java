@@ -0,0 +1,71 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import grid.SudokuGrid;
+import solver.DancingLinksSolver;
+import solver.KillerAdvancedSolver;
+import solver.SudokuSolver;
+
+/**
+ * Solves the sample games that need the most search with the dancing links
+ * solvers at each number of workers, dancing for standard games and advanced
+ * for Killer games. Speedups are bounded by the cores of the machine, the
+ * workers share one pool with a thread per core.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParallelSolverBenchmark {
+
+	@Param({ "hard-std-99-02", "easy-killer-99-02", "easy-killer-99-03" })
+	public String puzzle;
+
+	@Param({ "1", "2", "4" })
+	public int parallelism;
+
+	private SudokuGrid template;
+	private SudokuSolver solver;
+
+	@Setup
+	public void setup() throws IOException {
+		template = Puzzles.load(puzzle);
+		if (Puzzles.isKiller(puzzle)) {
+			KillerAdvancedSolver killerSolver = new KillerAdvancedSolver();
+			killerSolver.setParallelism(parallelism);
+			solver = killerSolver;
+		} else {
+			DancingLinksSolver stdSolver = new DancingLinksSolver();
+			stdSolver.setParallelism(parallelism);
+			solver = stdSolver;
+		}
+	}
+
+	@Benchmark
+	public SudokuGrid solve() {
+		SudokuGrid grid = template.copy();
+		if (!solver.solve(grid))
+			throw new IllegalStateException("parallelism " + parallelism + " failed to solve " + puzzle);
+		return grid;
+	}
+} // end of class ParallelSolverBenchmark
@@ -0,0 +1,75 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package benchmark;
+
+import java.io.File;
+import java.io.IOException;
+
+import grid.KillerSudokuGrid;
+import grid.StdSudokuGrid;
+import grid.SudokuGrid;
+import solver.AlgorXSolver;
+import solver.ArrayDancingLinksSolver;
+import solver.BackTrackingSolver;
+import solver.DancingLinksSolver;
+import solver.KillerAdvancedSolver;
+import solver.KillerBackTrackingSolver;
+import solver.SudokuSolver;
+
+/**
+ * Loads the sample games and constructs solvers by the names used on the
+ * RmitSudoku command line. Games are read from the directory given by the
+ * sudoku.games system property, ../src/sampleGames by default.
+ */
+public class Puzzles {
+	public static final String GAMES_DIR = System.getProperty("sudoku.games", "../src/sampleGames");
+
+	private Puzzles() {
+	}
+
+	// path of a sample game, given its name without the ".in" extension.
+	public static String path(String name) {
+		return new File(GAMES_DIR, name + ".in").getPath();
+	}
+
+	// killer games are the ones with "killer" in their name.
+	public static boolean isKiller(String name) {
+		return name.contains("killer");
+	}
+
+	public static SudokuGrid load(String name) throws IOException {
+		SudokuGrid grid = isKiller(name) ? new KillerSudokuGrid() : new StdSudokuGrid();
+		grid.initGrid(path(name));
+		return grid;
+	}
+
+	public static SudokuSolver sudokuSolver(String type) {
+		switch (type) {
+		case "backtracking":
+			return new BackTrackingSolver();
+		case "backtracking-mrv":
+			return new BackTrackingSolver(true);
+		case "algorx":
+			return new AlgorXSolver();
+		case "dancing":
+			return new DancingLinksSolver();
+		case "dancing-array":
+			return new ArrayDancingLinksSolver();
+		default:
+			throw new IllegalArgumentException("Unknown solver type " + type);
+		}
+	}
+
+	public static SudokuSolver killerSolver(String type) {
+		switch (type) {
+		case "backtracking":
+			return new KillerBackTrackingSolver();
+		case "advanced":
+			return new KillerAdvancedSolver();
+		default:
+			throw new IllegalArgumentException("Unknown solver type " + type);
+		}
+	}
+} // end of class Puzzles
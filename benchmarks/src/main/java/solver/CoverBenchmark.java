@@ -0,0 +1,80 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package solver;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import benchmark.Puzzles;
+import grid.StdSudokuGrid;
+
+/**
+ * Cover matrix building, on its own and linked into the structures the exact
+ * cover solvers search. Lives in the solver package to reach buildCover().
+ * Empty grids of larger sizes can be added with -p puzzle=... pointing at
+ * other games in the games directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoverBenchmark {
+
+	@Param({ "easy-std-44-01", "easy-std-99-01", "hard-std-99-01" })
+	public String puzzle;
+
+	private StdSudokuGrid grid;
+	// only used for its buildCover().
+	private final StdSudokuSolver builder = new ArrayDancingLinksSolver();
+
+	@Setup
+	public void setup() throws IOException {
+		grid = (StdSudokuGrid) Puzzles.load(puzzle);
+	}
+
+	// rows emitted straight into a blackhole, the cost of the enumeration.
+	@Benchmark
+	public void sparseCover(final Blackhole bh) {
+		builder.buildCover(grid, new SudokuSolver.CoverRowHandler() {
+			@Override
+			public void addRow(int rowIndex, int[] columns) {
+				bh.consume(rowIndex);
+			}
+		});
+	}
+
+	// rows kept for replay, as the parallel dancing links search does.
+	@Benchmark
+	public SudokuSolver.SparseCover storedCover() {
+		SudokuSolver.SparseCover cover = new SudokuSolver.SparseCover();
+		builder.buildCover(grid, cover);
+		return cover;
+	}
+
+	// rows linked into the array backed dancing links.
+	@Benchmark
+	public ArrayDancingLinks arrayLinks() {
+		int size = grid.size;
+		ArrayDancingLinks dlx = new ArrayDancingLinks(size * size * SudokuSolver.CONSTRAINTS,
+				size * size * size * SudokuSolver.CONSTRAINTS);
+		builder.buildCover(grid, dlx::addRow);
+		return dlx;
+	}
+} // end of class CoverBenchmark
@@ -9,17 +9,41 @@
  * @author Jeffrey Chan & Minyi Li, RMIT 2020
  */
 
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import generator.PuzzleGenerator;
+import grid.CompactPuzzleReader;
+import grid.CompactPuzzleWriter;
 import grid.KillerSudokuGrid;
 import grid.StdSudokuGrid;
 import grid.SudokuGrid;
+import server.SolveServer;
 import solver.AlgorXSolver;
+import solver.ArrayDancingLinksSolver;
 import solver.BackTrackingSolver;
 import solver.DancingLinksSolver;
 import solver.KillerAdvancedSolver;
 import solver.KillerBackTrackingSolver;
+import solver.PortfolioSolver;
+import solver.PropagatingSolver;
+import solver.SolverStats;
 import solver.SudokuSolver;
 
 /**
@@ -36,11 +60,52 @@ public class RmitSudoku {
 	 */
 	protected static final String progName = "RmitSudoku";
 
+	/**
+	 * Solver type suffix that adds a constraint propagation pre-pass.
+	 */
+	protected static final String PROPAGATION_SUFFIX = "+prop";
+
+	/**
+	 * Solver type that races several solvers, optionally followed by "=" and
+	 * a comma separated list of the solver types to race.
+	 */
+	protected static final String PORTFOLIO = "portfolio";
+
+	/**
+	 * Separates a solver type from the number of workers of its parallel
+	 * search, e.g. dancing:4. Only the dancing links solvers search in
+	 * parallel.
+	 */
+	protected static final String PARALLELISM_SEPARATOR = ":";
+
 	/**
 	 *
 	 * @param args the command line arguments
 	 */
 	public static void main(String[] args) {
+		// solve many puzzles in one run
+		if (args.length > 0 && args[0].equals("batch")) {
+			runBatch(args);
+			return;
+		}
+		// solve a corpus of one-line puzzles
+		if (args.length > 0 && args[0].equals("stream")) {
+			runStream(args);
+			return;
+		}
+
+		// write a corpus of generated puzzles
+		if (args.length > 0 && args[0].equals("generate")) {
+			runGenerate(args);
+			return;
+		}
+
+		// solve puzzles sent over HTTP
+		if (args.length > 0 && args[0].equals("server")) {
+			runServer(args);
+			return;
+		}
+
 		// read command line arguments
 		if (args.length < 4) {
 			System.err.println("Incorrect number of arguments.\n");
@@ -75,19 +140,8 @@ public class RmitSudoku {
 		// used to return constructed solver and grid
 		SolverGridPair pair = new SolverGridPair();
 
-		// which type of game?
 		// construct corresponding grid and solver
-		switch (gameType) {
-		case "sudoku":
-			initSudokuSolver(solverType, pair);
-			break;
-		case "killer":
-			initKillerSolver(solverType, pair);
-			break;
-		default:
-			System.err.println("Unknown game type specified.\n");
-			usage(progName);
-		}
+		initGameSolver(gameType, solverType, pair);
 
 		// retrieve constructed grid and pair
 		grid = pair.grid;
@@ -131,12 +185,18 @@ public class RmitSudoku {
 
 			// display time taken
 			System.out.println("time taken = " + ((double) (endTime - startTime)) / Math.pow(10, 9) + " sec.\n");
+			// display the work done by the search
+			System.out.println("search stats: " + solver.getStats() + "\n");
+			if (solver instanceof PortfolioSolver) {
+				System.out.println("portfolio winner: " + ((PortfolioSolver) solver).getWinner() + "\n");
+			}
 
 			// Check and validate solution
-			if (grid.validate()) {
+			String violation = grid.findViolation();
+			if (violation == null) {
 				System.out.println("Valid solution.");
 			} else {
-				System.out.println("Invalid solution.");
+				System.out.println("Invalid solution: " + violation + ".");
 			}
 
 			// output solved grid to file
@@ -154,6 +214,424 @@ public class RmitSudoku {
 
 	/* ************************************************* */
 
+	/**
+	 * Batch mode. Solves every puzzle of a directory (all *.in files) or of a
+	 * manifest (one puzzle path per line, relative to the manifest) on a pool of
+	 * worker threads, then prints throughput and latency percentiles.
+	 *
+	 * Solutions are written to a ".sol" file per puzzle, or, if the output
+	 * ends with ".sol", all to that one file, each after a "# puzzle path"
+	 * line and in the order they are solved.
+	 *
+	 * @param args batch [puzzle dir | manifest] [game type] [solver type]
+	 *             <threads> <output dir | output file>
+	 */
+	private static void runBatch(String[] args) {
+		if (args.length < 4) {
+			System.err.println("Incorrect number of arguments.\n");
+			usage(progName);
+		}
+
+		File source = new File(args[1]);
+		final String gameType = args[2];
+		final String solverType = args[3];
+		int threads = Runtime.getRuntime().availableProcessors();
+		if (args.length > 4) {
+			threads = Integer.parseInt(args[4]);
+		}
+		// solutions go next to the puzzles unless an output directory or file is
+		// given
+		final boolean singleOutput = args.length > 5 && args[5].endsWith(".sol");
+		final File outputDir = args.length > 5 && !singleOutput ? new File(args[5]) : null;
+		if (outputDir != null) {
+			outputDir.mkdirs();
+		}
+
+		// fail on unknown game or solver types before starting any thread
+		initGameSolver(gameType, solverType, new SolverGridPair());
+
+		final List<File> puzzles;
+		try {
+			puzzles = listPuzzles(source);
+		} catch (IOException e) {
+			System.err.println("IOExeption occurred. " + e.getMessage());
+			return;
+		}
+
+		// one solver per worker thread; grids are loaded fresh for every puzzle
+		// every solver created, to report portfolio wins at the end
+		final List<SudokuSolver> created = Collections.synchronizedList(new ArrayList<SudokuSolver>());
+		final ThreadLocal<SudokuSolver> solvers = new ThreadLocal<SudokuSolver>() {
+			@Override
+			protected SudokuSolver initialValue() {
+				SolverGridPair pair = new SolverGridPair();
+				initGameSolver(gameType, solverType, pair);
+				created.add(pair.solver);
+				return pair.solver;
+			}
+		};
+
+		final long[] latencies = new long[puzzles.size()];
+		final AtomicInteger solved = new AtomicInteger();
+		final AtomicInteger invalid = new AtomicInteger();
+		// the solver found no solution, or gave up
+		final AtomicInteger unsolved = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		// search statistics summed over every puzzle
+		final SolverStats totals = new SolverStats();
+
+		// one output kept open for the whole run, shared by the workers
+		final OutputStream solutionOut;
+		try {
+			solutionOut = singleOutput ? new BufferedOutputStream(new FileOutputStream(args[5]), 1 << 16) : null;
+		} catch (IOException e) {
+			System.err.println("IOExeption occurred. " + e.getMessage());
+			return;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		long startTime = System.nanoTime();
+
+		for (int i = 0; i < puzzles.size(); i++) {
+			final int index = i;
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					File puzzle = puzzles.get(index);
+					long puzzleStart = System.nanoTime();
+					try {
+						SudokuGrid grid = gameType.equals("killer") ? new KillerSudokuGrid() : new StdSudokuGrid();
+
+						grid.initGrid(puzzle.getPath());
+						SudokuSolver solver = solvers.get();
+						boolean success = solver.solve(grid);
+						totals.add(solver.getStats());
+						if (success) {
+							solved.incrementAndGet();
+							String violation = grid.findViolation();
+							if (violation != null) {
+								invalid.incrementAndGet();
+								System.err.println(puzzle.getPath() + ": invalid solution, " + violation);
+							}
+							if (solutionOut != null) {
+								writeSolution(solutionOut, puzzle, grid);
+							} else {
+								grid.outputGrid(solutionFile(puzzle, outputDir).getPath());
+							}
+						} else {
+							unsolved.incrementAndGet();
+							System.err.println(puzzle.getPath() + ": no solution found");
+						}
+					} catch (IOException | RuntimeException e) {
+						failed.incrementAndGet();
+						System.err.println(puzzle.getPath() + ": " + e);
+					}
+					latencies[index] = System.nanoTime() - puzzleStart;
+				}
+			});
+		}
+
+		pool.shutdown();
+		try {
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		if (solutionOut != null) {
+			try {
+				solutionOut.close();
+			} catch (IOException e) {
+				System.err.println("IOExeption occurred. " + e.getMessage());
+			}
+		}
+		long endTime = System.nanoTime();
+
+		double seconds = (endTime - startTime) / Math.pow(10, 9);
+		System.out.println("Puzzles: " + puzzles.size() + ", solved: " + solved.get() + ", invalid: "
+				+ invalid.get() + ", unsolved: " + unsolved.get() + ", failed: " + failed.get() + "\n");
+		System.out.println("time taken = " + seconds + " sec.");
+		System.out.println("throughput = " + (puzzles.size() / seconds) + " puzzles/sec.");
+		System.out.println("search stats: " + totals);
+		printPortfolioWins(created);
+
+		Arrays.sort(latencies);
+		System.out.println("latency p50 = " + percentile(latencies, 50) + " ms, p90 = " + percentile(latencies, 90)
+				+ " ms, p99 = " + percentile(latencies, 99) + " ms, max = " + percentile(latencies, 100) + " ms");
+	} // end of runBatch()
+
+	/**
+	 * Stream mode. Solves every puzzle of a corpus in the one puzzle per line
+	 * format of CompactPuzzleReader, writing the solutions in the same format,
+	 * one line per puzzle and in the same order.
+	 *
+	 * @param args stream [corpus file] [game type] [solver type] <output file>
+	 */
+	private static void runStream(String[] args) {
+		if (args.length < 4) {
+			System.err.println("Incorrect number of arguments.\n");
+			usage(progName);
+		}
+
+		String corpus = args[1];
+		String gameType = args[2];
+		SolverGridPair pair = new SolverGridPair();
+		initGameSolver(gameType, args[3], pair);
+		SudokuSolver solver = pair.solver;
+		String outFilename = args.length > 4 ? args[4] : null;
+
+		int puzzles = 0;
+		int solved = 0;
+		int invalid = 0;
+		int unsolved = 0;
+		SolverStats totals = new SolverStats();
+		long startTime = System.nanoTime();
+
+		try (CompactPuzzleReader reader = new CompactPuzzleReader(corpus);
+				CompactPuzzleWriter writer = outFilename != null ? new CompactPuzzleWriter(outFilename) : null) {
+			StdSudokuGrid grid;
+			while ((grid = reader.next()) != null) {
+				puzzles++;
+				if ((grid instanceof KillerSudokuGrid) != gameType.equals("killer")) {
+					throw new IOException("puzzle " + puzzles + " is not a " + gameType + " puzzle");
+				}
+
+				boolean success = solver.solve(grid);
+				totals.add(solver.getStats());
+				if (success) {
+					solved++;
+					String violation = grid.findViolation();
+					if (violation != null) {
+						invalid++;
+						System.err.println("puzzle " + puzzles + ": invalid solution, " + violation);
+					}
+				} else {
+					unsolved++;
+					System.err.println("puzzle " + puzzles + ": no solution found");
+				}
+				// unsolved puzzles are written back as they are
+				if (writer != null) {
+					writer.write(grid);
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("IOExeption occurred. " + e.getMessage());
+		}
+		long endTime = System.nanoTime();
+
+		double seconds = (endTime - startTime) / Math.pow(10, 9);
+		System.out.println("Puzzles: " + puzzles + ", solved: " + solved + ", invalid: " + invalid + ", unsolved: "
+				+ unsolved + "\n");
+		System.out.println("time taken = " + seconds + " sec.");
+		System.out.println("throughput = " + (puzzles / seconds) + " puzzles/sec.");
+		System.out.println("search stats: " + totals);
+		printPortfolioWins(Collections.singletonList(solver));
+	} // end of runStream()
+
+	/**
+	 * Generate mode. Writes puzzles with a unique solution, one file per puzzle,
+	 * named [game type]-[size]-[seed]-[number].in. The same seed always gives
+	 * the same puzzles.
+	 *
+	 * @param args generate [game type] [size] [count] [seed] [output dir]
+	 *             <min givens (sudoku) | max cage size (killer)>
+	 */
+	private static void runGenerate(String[] args) {
+		if (args.length < 6) {
+			System.err.println("Incorrect number of arguments.\n");
+			usage(progName);
+		}
+
+		String gameType = args[1];
+		int size = Integer.parseInt(args[2]);
+		int count = Integer.parseInt(args[3]);
+		long seed = Long.parseLong(args[4]);
+		File outputDir = new File(args[5]);
+		outputDir.mkdirs();
+
+		PuzzleGenerator generator = new PuzzleGenerator(seed);
+		if (gameType.equals("sudoku")) {
+			if (args.length > 6) {
+				generator.setMinGivens(Integer.parseInt(args[6]));
+			}
+		} else if (gameType.equals("killer")) {
+			if (args.length > 6) {
+				generator.setMaxCageSize(Integer.parseInt(args[6]));
+			}
+		} else {
+			System.err.println("Unknown game type specified.\n");
+			usage(progName);
+		}
+
+		long startTime = System.nanoTime();
+		try {
+			for (int i = 0; i < count; i++) {
+				StdSudokuGrid puzzle = gameType.equals("killer") ? generator.generateKiller(size)
+						: generator.generateStd(size);
+				String name = gameType + "-" + size + "-" + seed + "-" + String.format("%04d", i) + ".in";
+				puzzle.outputPuzzle(new File(outputDir, name).getPath());
+			}
+		} catch (IOException e) {
+			System.err.println("IOExeption occurred. " + e.getMessage());
+		}
+		long endTime = System.nanoTime();
+
+		System.out.println("time taken = " + ((double) (endTime - startTime)) / Math.pow(10, 9) + " sec.");
+	} // end of runGenerate()
+
+	/**
+	 * Server mode. Solves puzzles sent to POST /solve on the loopback interface
+	 * until the program is stopped, see SolveServer.
+	 *
+	 * @param args server [game type] [solver type] <port> <max concurrent>
+	 *             <timeout ms> <max request bytes>
+	 */
+	private static void runServer(String[] args) {
+		if (args.length < 3) {
+			System.err.println("Incorrect number of arguments.\n");
+			usage(progName);
+		}
+
+		final String gameType = args[1];
+		final String solverType = args[2];
+		int port = args.length > 3 ? Integer.parseInt(args[3]) : 8080;
+
+		// fail on unknown game or solver types before listening
+		initGameSolver(gameType, solverType, new SolverGridPair());
+
+		SolveServer server = new SolveServer(gameType, () -> {
+			SolverGridPair pair = new SolverGridPair();
+			initGameSolver(gameType, solverType, pair);
+			return pair.solver;
+		});
+		if (args.length > 4) {
+			server.setMaxConcurrent(Integer.parseInt(args[4]));
+		}
+		if (args.length > 5) {
+			server.setTimeoutMillis(Long.parseLong(args[5]));
+		}
+		if (args.length > 6) {
+			server.setMaxRequestBytes(Integer.parseInt(args[6]));
+		}
+
+		try {
+			server.start(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+		} catch (IOException e) {
+			System.err.println("IOExeption occurred. " + e.getMessage());
+			return;
+		}
+		InetSocketAddress address = server.getAddress();
+		System.out.println("listening on http://" + address.getHostString() + ":" + address.getPort() + "/solve ("
+				+ (server.usesVirtualThreads() ? "virtual threads" : "thread pool") + ")");
+	} // end of runServer()
+
+	/**
+	 * Lists the puzzles of a batch run.
+	 *
+	 * @param source Directory of *.in files or manifest file.
+	 * @return Puzzle files, in name order for a directory.
+	 */
+	private static List<File> listPuzzles(File source) throws IOException {
+		List<File> puzzles = new ArrayList<File>();
+
+		if (source.isDirectory()) {
+			File[] files = source.listFiles();
+			if (files != null) {
+				Arrays.sort(files);
+				for (File file : files) {
+					if (file.isFile() && file.getName().endsWith(".in")) {
+						puzzles.add(file);
+					}
+				}
+			}
+		} else {
+			File base = source.getAbsoluteFile().getParentFile();
+			for (String line : Files.readAllLines(source.toPath(), StandardCharsets.UTF_8)) {
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+				File file = new File(line);
+				puzzles.add(file.isAbsolute() ? file : new File(base, line));
+			}
+		}
+		return puzzles;
+	} // end of listPuzzles()
+
+	/**
+	 * File the solution of a puzzle is written to: the puzzle's name with a
+	 * ".sol" extension, next to the puzzle or in the output directory.
+	 */
+	private static File solutionFile(File puzzle, File outputDir) {
+		String name = puzzle.getName();
+		int dot = name.lastIndexOf('.');
+		if (dot > 0) {
+			name = name.substring(0, dot);
+		}
+		File dir = outputDir != null ? outputDir : puzzle.getAbsoluteFile().getParentFile();
+		return new File(dir, name + ".sol");
+	} // end of solutionFile()
+
+	/**
+	 * Appends the solution of a puzzle to the shared output of a batch run,
+	 * after a line naming the puzzle. Workers take turns so solutions don't
+	 * interleave.
+	 */
+	private static void writeSolution(OutputStream out, File puzzle, SudokuGrid grid) throws IOException {
+		byte[] header = ("# " + puzzle.getPath() + "\n").getBytes(StandardCharsets.UTF_8);
+		synchronized (out) {
+			out.write(header);
+			grid.writeGrid(out);
+		}
+	} // end of writeSolution()
+
+	/**
+	 * Prints how many puzzles each member of the portfolio solvers won, summed
+	 * over the solvers. Prints nothing for other solvers.
+	 */
+	private static void printPortfolioWins(List<SudokuSolver> solvers) {
+		String[] names = null;
+		long[] wins = null;
+		synchronized (solvers) {
+			for (SudokuSolver solver : solvers) {
+				if (!(solver instanceof PortfolioSolver)) {
+					continue;
+				}
+				PortfolioSolver portfolio = (PortfolioSolver) solver;
+				long[] solverWins = portfolio.getWins();
+				if (wins == null) {
+					names = portfolio.getMemberNames();
+					wins = new long[solverWins.length];
+				}
+				for (int i = 0; i < wins.length; i++) {
+					wins[i] += solverWins[i];
+				}
+			}
+		}
+		if (wins == null) {
+			return;
+		}
+
+		StringBuilder sb = new StringBuilder("portfolio wins:");
+		for (int i = 0; i < wins.length; i++) {
+			sb.append(i == 0 ? " " : ", ").append(names[i]).append(" = ").append(wins[i]);
+		}
+		System.out.println(sb);
+	} // end of printPortfolioWins()
+
+	/**
+	 * Nearest-rank percentile of sorted latencies, in milliseconds.
+	 */
+	private static double percentile(long[] sortedNanos, int percent) {
+		if (sortedNanos.length == 0) {
+			return 0;
+		}
+		int rank = (int) Math.ceil(percent / 100.0 * sortedNanos.length);
+		int index = Math.min(sortedNanos.length - 1, Math.max(0, rank - 1));
+		return sortedNanos[index] / Math.pow(10, 6);
+	} // end of percentile()
+
+	/* ************************************************* */
+
 	/**
 	 * Print help/usage message.
 	 *
@@ -163,13 +641,125 @@ public class RmitSudoku {
 
 		System.err.println(progName + ": [grid fileName] [game type] [solver type] [visualisation] <output filename>");
 		System.err.println("[game type] = {sudoku | killer}");
-		System.err.println("[solver type] (for Sudoku) = {backtracking | algorx | dancing}");
+		System.err.println("[solver type] (for Sudoku) = {backtracking | backtracking-mrv | algorx | dancing | dancing-array}");
 		System.err.println("[solver type] (for Killer Sudoku) = {backtracking | advanced}");
+		System.err.println("[solver type] = " + PORTFOLIO + "<=solver type,solver type,...> races the solvers");
+		System.err.println("[solver type] + \"" + PROPAGATION_SUFFIX + "\" (e.g. dancing" + PROPAGATION_SUFFIX
+				+ ") runs constraint propagation before the search");
+		System.err.println("{dancing | advanced} + \"" + PARALLELISM_SEPARATOR + "<workers>\" (e.g. dancing"
+				+ PARALLELISM_SEPARATOR + "4) searches in parallel");
 		System.err.println("<visualisation> = <y | n>");
+		System.err.println(progName + " batch [puzzle dir | manifest] [game type] [solver type] <threads> <output dir | output file.sol>");
+		System.err.println(progName + " stream [corpus file] [game type] [solver type] <output file>");
+		System.err.println(progName
+				+ " generate [game type] [size] [count] [seed] [output dir] <min givens | max cage size>");
+		System.err.println(progName
+				+ " server [game type] [solver type] <port> <max concurrent> <timeout ms> <max request bytes>");
 
 		System.exit(1);
 	} // end of usage()
 
+	/**
+	 * Contruct appropriate grid and solver for the game type.
+	 *
+	 * @param gameType   Type of game, sudoku or killer.
+	 * @param solverType Type of solver we want to use and construct.
+	 * @param pair       Used to return the constructed grid and solver (return by
+	 *                   reference).
+	 */
+	private static void initGameSolver(String gameType, String solverType, SolverGridPair pair) {
+		if (solverType.startsWith(PORTFOLIO)) {
+			initPortfolioSolver(gameType, solverType, pair);
+			return;
+		}
+
+		// a "+prop" suffix runs constraint propagation before the search
+		boolean propagate = solverType.endsWith(PROPAGATION_SUFFIX);
+		if (propagate) {
+			solverType = solverType.substring(0, solverType.length() - PROPAGATION_SUFFIX.length());
+		}
+
+		// a ":<workers>" suffix searches in parallel
+		int parallelism = 1;
+		int separator = solverType.indexOf(PARALLELISM_SEPARATOR);
+		if (separator >= 0) {
+			try {
+				parallelism = Integer.parseInt(solverType.substring(separator + 1));
+			} catch (NumberFormatException e) {
+				parallelism = 0;
+			}
+			if (parallelism < 1) {
+				System.err.println("Invalid number of workers specified.\n");
+				usage(progName);
+			}
+			solverType = solverType.substring(0, separator);
+		}
+
+		// which type of game?
+		switch (gameType) {
+		case "sudoku":
+			initSudokuSolver(solverType, pair);
+			break;
+		case "killer":
+			initKillerSolver(solverType, pair);
+			break;
+		default:
+			System.err.println("Unknown game type specified.\n");
+			usage(progName);
+		}
+
+		if (parallelism > 1) {
+			if (pair.solver instanceof DancingLinksSolver) {
+				((DancingLinksSolver) pair.solver).setParallelism(parallelism);
+			} else if (pair.solver instanceof KillerAdvancedSolver) {
+				((KillerAdvancedSolver) pair.solver).setParallelism(parallelism);
+			} else {
+				System.err.println("Solver type " + solverType + " does not search in parallel.\n");
+				usage(progName);
+			}
+		}
+
+		if (propagate) {
+			pair.solver = new PropagatingSolver(pair.solver);
+		}
+	} // end of initGameSolver()
+
+	/**
+	 * Contruct a portfolio solver racing the solver types listed after
+	 * "portfolio=", or backtracking, dancing and algorx for Sudoku and
+	 * backtracking and advanced for Killer Sudoku.
+	 *
+	 * @param gameType   Type of game, sudoku or killer.
+	 * @param solverType "portfolio" or "portfolio=" and the solver types.
+	 * @param pair       Used to return the constructed grid and solver (return by
+	 *                   reference).
+	 */
+	private static void initPortfolioSolver(String gameType, String solverType, SolverGridPair pair) {
+		String[] names;
+		if (solverType.startsWith(PORTFOLIO + "=")) {
+			names = solverType.substring(PORTFOLIO.length() + 1).split(",");
+		} else if (solverType.equals(PORTFOLIO)) {
+			names = gameType.equals("killer") ? new String[] { "backtracking", "advanced" }
+					: new String[] { "backtracking", "dancing", "algorx" };
+		} else {
+			System.err.println("Unknown solver type specified.\n");
+			usage(progName);
+			return;
+		}
+
+		SudokuSolver[] members = new SudokuSolver[names.length];
+		for (int i = 0; i < names.length; i++) {
+			// members can't be portfolios themselves
+			if (names[i].startsWith(PORTFOLIO)) {
+				System.err.println("Unknown solver type specified.\n");
+				usage(progName);
+			}
+			initGameSolver(gameType, names[i], pair);
+			members[i] = pair.solver;
+		}
+		pair.solver = new PortfolioSolver(names, members);
+	} // end of initPortfolioSolver()
+
 	/**
 	 * Contruct appropriate grid and solver for (standard) Sudoku.
 	 *
@@ -189,6 +779,10 @@ public class RmitSudoku {
 			grid = new StdSudokuGrid();
 			solver = new BackTrackingSolver();
 			break;
+		case "backtracking-mrv":
+			grid = new StdSudokuGrid();
+			solver = new BackTrackingSolver(true);
+			break;
 		case "algorx":
 			grid = new StdSudokuGrid();
 			solver = new AlgorXSolver();
@@ -197,6 +791,10 @@ public class RmitSudoku {
 			grid = new StdSudokuGrid();
 			solver = new DancingLinksSolver();
 			break;
+		case "dancing-array":
+			grid = new StdSudokuGrid();
+			solver = new ArrayDancingLinksSolver();
+			break;
 		default:
 			System.err.println("Unknown solver type specified.\n");
 			usage(progName);
@@ -0,0 +1,444 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package generator;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import grid.KillerSudokuGrid;
+import grid.StdSudokuGrid;
+import solver.ArrayDancingLinksSolver;
+import solver.KillerAdvancedSolver;
+import solver.SearchLimit;
+
+/**
+ * Generates standard and Killer Sudoku puzzles with exactly one solution, so
+ * that corpora of any size can be built for testing and benchmarking.
+ *
+ * A full solution is built first by a randomised search over an empty grid.
+ * A standard puzzle then has its givens removed in random order, each removal
+ * kept only if a search limited to two solutions still finds just one. A
+ * Killer puzzle has the solution split into random cages of distinct values,
+ * and cages are split up until the cage totals have only that solution.
+ *
+ * All the randomness comes from one seeded generator, so the same seed gives
+ * the same puzzles.
+ */
+public class PuzzleGenerator {
+	private final Random random;
+
+	// fewest givens a standard puzzle is left with, removal stops there.
+	private int minGivens = 0;
+	// largest number of cells in a Killer cage.
+	private int maxCageSize = 4;
+
+	// search nodes a solution may take before the search starts again, as a
+	// multiple of the number of cells.
+	private static final int RESTART_FACTOR = 20;
+
+	// search nodes a uniqueness check may visit, as a multiple of the number of
+	// cells. A check that runs out doesn't prove the puzzle unique, so the
+	// generator then plays safe: it keeps the given or splits a cage. This
+	// keeps the puzzles of large grids within reach of the solvers.
+	private static final int CHECK_NODE_FACTOR = 20;
+
+	// searches limited to two solutions, to tell whether a puzzle is unique.
+	private final ArrayDancingLinksSolver stdChecker = new ArrayDancingLinksSolver();
+	private final KillerAdvancedSolver killerChecker = new KillerAdvancedSolver();
+
+	public PuzzleGenerator(long seed) {
+		random = new Random(seed);
+		stdChecker.setSolutionLimit(2);
+		killerChecker.setSolutionLimit(2);
+	} // end of PuzzleGenerator()
+
+	public void setMinGivens(int minGivens) {
+		this.minGivens = Math.max(0, minGivens);
+	}
+
+	public void setMaxCageSize(int maxCageSize) {
+		this.maxCageSize = Math.max(1, maxCageSize);
+	}
+
+	/**
+	 * Builds a random full solution.
+	 *
+	 * @param size Grid size, a square number.
+	 *
+	 * @return Grid over the values 1 to size with every cell filled.
+	 */
+	public StdSudokuGrid generateSolution(int size) throws IOException {
+		StdSudokuGrid solution = new StdSudokuGrid();
+		solution.initEmptyGrid(size, defaultNumbers(size));
+
+		// a search can wander into a part of the tree without solutions, it is
+		// then cheaper to start again than to backtrack out of it.
+		while (!fill(solution, new long[] { (long) RESTART_FACTOR * size * size })) {
+			solution.initEmptyGrid(size, solution.validNumbers);
+		}
+		return solution;
+	} // end of generateSolution()
+
+	/**
+	 * Builds a standard Sudoku puzzle with a unique solution.
+	 *
+	 * @param size Grid size, a square number.
+	 *
+	 * @return Puzzle whose filled cells are the givens.
+	 */
+	public StdSudokuGrid generateStd(int size) throws IOException {
+		StdSudokuGrid puzzle = generateSolution(size);
+
+		int givens = size * size;
+		for (int cell : shuffledCells(size)) {
+			if (givens <= minGivens)
+				break;
+
+			int row = cell / size;
+			int col = cell % size;
+			int number = puzzle.grid[row][col];
+
+			puzzle.clearValue(row, col);
+			if (isUnique(puzzle)) {
+				givens--;
+			} else {
+				puzzle.setValue(row, col, number);
+			}
+		}
+		return puzzle;
+	} // end of generateStd()
+
+	/**
+	 * Builds a Killer Sudoku puzzle with a unique solution.
+	 *
+	 * @param size Grid size, a square number.
+	 *
+	 * @return Puzzle with its cages and empty cells.
+	 */
+	public KillerSudokuGrid generateKiller(int size) throws IOException {
+		StdSudokuGrid solution = generateSolution(size);
+		int[] cageOf = partition(solution);
+
+		while (true) {
+			KillerSudokuGrid puzzle = killerPuzzle(solution, cageOf);
+			KillerSudokuGrid attempt = puzzle.copy();
+			SearchLimit limit = SearchLimit.nodes((long) CHECK_NODE_FACTOR * size * size);
+			killerChecker.solve(attempt, limit);
+			if (killerChecker.getSolutionCount() == 1 && !limit.isStopped())
+				return puzzle;
+
+			// one of the two solutions found isn't ours, a single split is then
+			// enough to rule it out. A check that ran out may not have found
+			// another one; the cages are then too loose for the budget and a
+			// cell per row is split at once, as many rounds would be needed.
+			int[][] other = null;
+			if (killerChecker.getSolutionCount() > 0 && !sameValues(attempt.grid, solution.grid))
+				other = attempt.grid;
+			else if (killerChecker.getSolutionCount() > 1)
+				other = killerChecker.getSecondSolution();
+			splitCells(solution, other, cageOf, other != null ? 1 : size);
+		}
+	} // end of generateKiller()
+
+	// fills the empty cells, always the one with the fewest candidates, trying
+	// its candidates in random order. Gives up once the node budget is spent.
+	private boolean fill(StdSudokuGrid grid, long[] budget) {
+		int size = grid.size;
+		int bestRow = -1;
+		int bestCol = -1;
+		long bestMask = 0;
+		int min = Integer.MAX_VALUE;
+
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				if (grid.grid[row][col] != 0)
+					continue;
+
+				long mask = grid.candidateMask(row, col);
+				int count = Long.bitCount(mask);
+				if (count < min) {
+					min = count;
+					bestRow = row;
+					bestCol = col;
+					bestMask = mask;
+					if (count == 0)
+						return false;
+				}
+			}
+		}
+
+		// every cell is filled.
+		if (bestRow < 0)
+			return true;
+		if (--budget[0] < 0)
+			return false;
+
+		long mask = bestMask;
+		while (mask != 0) {
+			long bit = randomBit(mask);
+			mask &= ~bit;
+
+			grid.setValue(bestRow, bestCol, grid.validNumbers[Long.numberOfTrailingZeros(bit)]);
+			if (fill(grid, budget))
+				return true;
+			grid.clearValue(bestRow, bestCol);
+
+			if (budget[0] < 0)
+				return false;
+		}
+		return false;
+	} // end of fill()
+
+	// a set bit of the mask, each with the same chance.
+	private long randomBit(long mask) {
+		for (int skip = random.nextInt(Long.bitCount(mask)); skip > 0; skip--) {
+			mask &= mask - 1;
+		}
+		return Long.lowestOneBit(mask);
+	}
+
+	// whether the givens of the puzzle have only one solution.
+	private boolean isUnique(StdSudokuGrid puzzle) {
+		int size = puzzle.size;
+		SearchLimit limit = SearchLimit.nodes((long) CHECK_NODE_FACTOR * size * size);
+		stdChecker.solve(puzzle.copy(), limit);
+		return stdChecker.getSolutionCount() == 1 && !limit.isStopped();
+	}
+
+	// splits the cells of the solution into cages of distinct values. Each cage
+	// grows from a random free cell into free neighbours, up to a random size.
+	// Returns the cage of every cell (row * size + col).
+	private int[] partition(StdSudokuGrid solution) {
+		int size = solution.size;
+		int[] cageOf = new int[size * size];
+		Arrays.fill(cageOf, -1);
+
+		int[] cage = new int[maxCageSize];
+		int[] neighbours = new int[4 * maxCageSize];
+		int noOfCages = 0;
+
+		for (int start : shuffledCells(size)) {
+			if (cageOf[start] >= 0)
+				continue;
+
+			// cages of one cell are givens, only left where no neighbour fits
+			int target = maxCageSize == 1 ? 1 : 2 + random.nextInt(maxCageSize - 1);
+			int cells = 0;
+			cage[cells++] = start;
+			cageOf[start] = noOfCages;
+			long used = 1L << solution.symbolIndex(value(solution, start));
+
+			while (cells < target) {
+				// free neighbours whose value isn't in the cage yet
+				int noOfNeighbours = 0;
+				for (int i = 0; i < cells; i++) {
+					int row = cage[i] / size;
+					int col = cage[i] % size;
+					noOfNeighbours = addNeighbour(solution, cageOf, used, row - 1, col, neighbours, noOfNeighbours);
+					noOfNeighbours = addNeighbour(solution, cageOf, used, row + 1, col, neighbours, noOfNeighbours);
+					noOfNeighbours = addNeighbour(solution, cageOf, used, row, col - 1, neighbours, noOfNeighbours);
+					noOfNeighbours = addNeighbour(solution, cageOf, used, row, col + 1, neighbours, noOfNeighbours);
+				}
+				if (noOfNeighbours == 0)
+					break;
+
+				int next = neighbours[random.nextInt(noOfNeighbours)];
+				cage[cells++] = next;
+				cageOf[next] = noOfCages;
+				used |= 1L << solution.symbolIndex(value(solution, next));
+			}
+			noOfCages++;
+		}
+		return cageOf;
+	} // end of partition()
+
+	private int addNeighbour(StdSudokuGrid solution, int[] cageOf, long used, int row, int col, int[] neighbours,
+			int noOfNeighbours) {
+		int size = solution.size;
+		if (row < 0 || row >= size || col < 0 || col >= size || cageOf[row * size + col] >= 0)
+			return noOfNeighbours;
+		if ((used & (1L << solution.symbolIndex(solution.grid[row][col]))) != 0)
+			return noOfNeighbours;
+
+		neighbours[noOfNeighbours] = row * size + col;
+		return noOfNeighbours + 1;
+	}
+
+	// moves cells into cages of their own, fixing their values. The cells are
+	// random ones where the other solution differs from ours, or any cells of
+	// larger cages if there is no other solution to go by. If the rest of a
+	// cell's cage falls apart, each piece becomes a cage, so cages stay
+	// connected.
+	private void splitCells(StdSudokuGrid solution, int[][] other, int[] cageOf, int count) {
+		int size = solution.size;
+		int noOfCages = 0;
+		for (int cage : cageOf) {
+			noOfCages = Math.max(noOfCages, cage + 1);
+		}
+		// a split makes the cell's cage and at most three more pieces
+		int[] cageSize = new int[noOfCages + 4 * count];
+		for (int cage : cageOf) {
+			cageSize[cage]++;
+		}
+
+		int[] differing = new int[size * size];
+		for (int i = 0; i < count; i++) {
+			// a cage of one cell has only one value, so every difference is in
+			// a larger cage.
+			int noOfDiffering = 0;
+			for (int cell = 0; cell < size * size; cell++) {
+				if (cageSize[cageOf[cell]] > 1
+						&& (other == null || other[cell / size][cell % size] != value(solution, cell)))
+					differing[noOfDiffering++] = cell;
+			}
+			if (noOfDiffering == 0)
+				return;
+
+			int cell = differing[random.nextInt(noOfDiffering)];
+			int cage = cageOf[cell];
+			cageSize[cage]--;
+			cageOf[cell] = noOfCages;
+			cageSize[noOfCages++]++;
+			noOfCages = splitPieces(cageOf, cageSize, size, cell, cage, noOfCages);
+		}
+	} // end of splitCells()
+
+	// keeps the first piece of the cage left around the cell just moved out of
+	// it, and gives every other piece a cage of its own. Each piece touches the
+	// cell, as the cage was connected with it. Returns the number of cages.
+	private static int splitPieces(int[] cageOf, int[] cageSize, int size, int cell, int cage, int noOfCages) {
+		// the first piece is marked while the others are moved out
+		final int firstPiece = -2;
+		int[] stack = new int[size * size];
+		int[] around = new int[4];
+		int noOfAround = neighbours(cell, size, around);
+		int first = -1;
+
+		for (int i = 0; i < noOfAround; i++) {
+			int start = around[i];
+			if (cageOf[start] != cage)
+				continue;
+
+			if (first < 0) {
+				first = start;
+				flood(cageOf, size, start, cage, firstPiece, stack);
+			} else {
+				int piece = flood(cageOf, size, start, cage, noOfCages, stack);
+				cageSize[cage] -= piece;
+				cageSize[noOfCages++] = piece;
+			}
+		}
+		if (first >= 0)
+			flood(cageOf, size, first, firstPiece, cage, stack);
+		return noOfCages;
+	}
+
+	// moves the connected cells of cage from into cage to, starting at start.
+	// Returns the number of cells moved.
+	private static int flood(int[] cageOf, int size, int start, int from, int to, int[] stack) {
+		int[] around = new int[4];
+		int top = 0;
+		int moved = 0;
+		cageOf[start] = to;
+		stack[top++] = start;
+		while (top > 0) {
+			int cell = stack[--top];
+			moved++;
+			int noOfAround = neighbours(cell, size, around);
+			for (int i = 0; i < noOfAround; i++) {
+				if (cageOf[around[i]] == from) {
+					cageOf[around[i]] = to;
+					stack[top++] = around[i];
+				}
+			}
+		}
+		return moved;
+	}
+
+	// the cells next to the cell (row * size + col), returns how many.
+	private static int neighbours(int cell, int size, int[] around) {
+		int row = cell / size;
+		int col = cell % size;
+		int count = 0;
+		if (row > 0)
+			around[count++] = cell - size;
+		if (row < size - 1)
+			around[count++] = cell + size;
+		if (col > 0)
+			around[count++] = cell - 1;
+		if (col < size - 1)
+			around[count++] = cell + 1;
+		return count;
+	}
+
+	// Killer puzzle over the cages, each with the total of its solution values.
+	private KillerSudokuGrid killerPuzzle(StdSudokuGrid solution, int[] cageOf) throws IOException {
+		int size = solution.size;
+		int noOfCages = 0;
+		for (int cage : cageOf) {
+			noOfCages = Math.max(noOfCages, cage + 1);
+		}
+
+		int[] cageSize = new int[noOfCages];
+		for (int cage : cageOf) {
+			cageSize[cage]++;
+		}
+		int[][] cages = new int[noOfCages][];
+		int[] totals = new int[noOfCages];
+		for (int i = 0; i < noOfCages; i++) {
+			cages[i] = new int[cageSize[i]];
+			cageSize[i] = 0;
+		}
+		for (int cell = 0; cell < size * size; cell++) {
+			int cage = cageOf[cell];
+			cages[cage][cageSize[cage]++] = cell;
+			totals[cage] += value(solution, cell);
+		}
+
+		KillerSudokuGrid puzzle = new KillerSudokuGrid();
+		puzzle.initEmptyGrid(size, solution.validNumbers);
+		for (int i = 0; i < noOfCages; i++) {
+			puzzle.addCage(totals[i], cages[i]);
+		}
+		return puzzle;
+	} // end of killerPuzzle()
+
+	// cells (row * size + col) in random order.
+	private int[] shuffledCells(int size) {
+		int[] cells = new int[size * size];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = i;
+		}
+		for (int i = cells.length - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = cells[i];
+			cells[i] = cells[j];
+			cells[j] = swap;
+		}
+		return cells;
+	}
+
+	private static boolean sameValues(int[][] a, int[][] b) {
+		for (int row = 0; row < a.length; row++) {
+			if (!Arrays.equals(a[row], b[row]))
+				return false;
+		}
+		return true;
+	}
+
+	private static int value(StdSudokuGrid grid, int cell) {
+		return grid.grid[cell / grid.size][cell % grid.size];
+	}
+
+	// the values 1 to size.
+	private static int[] defaultNumbers(int size) {
+		int[] numbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = i + 1;
+		}
+		return numbers;
+	}
+} // end of class PuzzleGenerator
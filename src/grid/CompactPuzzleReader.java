@@ -0,0 +1,245 @@
+/**
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+package grid;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a corpus of puzzles stored one per line. The file is memory mapped, or
+ * the puzzles are already in memory, and every line is parsed straight from its
+ * bytes into a grid.
+ *
+ * A standard Sudoku line holds size * size cells in row-major order, e.g. the
+ * classic 81 character string for 9 by 9. '0' or '.' is an empty cell, '1'-'9'
+ * are 1-9, 'A'-'Z' are 10-35, 'a'-'z' are 36-61 and '+', '/', '@' are 62-64,
+ * so every size up to StdSudokuGrid.MAX_SIZE can be written.
+ *
+ * A Killer Sudoku line starts with the grid size and lists its cages, each as
+ * its total followed by the cells in it (row * size + col):
+ * size;total=cell,cell,...;total=cell,...
+ *
+ * Both puzzle types use the values 1 to size. Empty lines and lines starting
+ * with '#' are skipped.
+ */
+public class CompactPuzzleReader implements Closeable {
+	// largest part of the file mapped at once.
+	private static final long WINDOW_SIZE = 1L << 30;
+
+	// symbol of every value, from the empty cell to StdSudokuGrid.MAX_SIZE.
+	static final String SYMBOLS = ".123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz+/@";
+	// value of every ASCII symbol, -1 if it isn't one.
+	private static final byte[] SYMBOL_VALUES = new byte[128];
+
+	static {
+		Arrays.fill(SYMBOL_VALUES, (byte) -1);
+		for (int value = 0; value < SYMBOLS.length(); value++) {
+			SYMBOL_VALUES[SYMBOLS.charAt(value)] = (byte) value;
+		}
+		SYMBOL_VALUES['0'] = 0;
+	}
+
+	// null when reading from memory.
+	private final FileChannel channel;
+	private final long fileSize;
+
+	private ByteBuffer buffer;
+	// file position of the start of the mapped window.
+	private long windowStart;
+	// position of the next line within the window.
+	private int position;
+	private long lineNumber = 0;
+
+	public CompactPuzzleReader(String filename) throws IOException {
+		channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ);
+		fileSize = channel.size();
+		map(0);
+	}
+
+	// reads the puzzles from the remaining bytes of data.
+	public CompactPuzzleReader(ByteBuffer data) {
+		channel = null;
+		buffer = data.slice();
+		fileSize = buffer.limit();
+		windowStart = 0;
+		position = 0;
+	}
+
+	private void map(long start) throws IOException {
+		windowStart = start;
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+		position = 0;
+	}
+
+	/**
+	 * Reads the next puzzle.
+	 *
+	 * @return A StdSudokuGrid or KillerSudokuGrid, or null at the end of the
+	 *         file.
+	 * @throws IOException If the line is malformed, with its line number.
+	 */
+	public StdSudokuGrid next() throws IOException {
+		while (true) {
+			// find the end of the next line, moving the window if the line
+			// crosses its end.
+			int end = position;
+			while (end < buffer.limit() && buffer.get(end) != '\n') {
+				end++;
+			}
+			if (end == buffer.limit() && windowStart + end < fileSize) {
+				if (position == 0)
+					throw new IOException("line " + (lineNumber + 1) + ": line too long");
+				map(windowStart + position);
+				continue;
+			}
+			if (position >= buffer.limit())
+				return null;
+
+			int start = position;
+			position = end + 1;
+			lineNumber++;
+
+			// ignore windows line endings.
+			if (end > start && buffer.get(end - 1) == '\r')
+				end--;
+			if (end == start || buffer.get(start) == '#')
+				continue;
+
+			return parseLine(start, end);
+		}
+	}
+
+	private StdSudokuGrid parseLine(int start, int end) throws IOException {
+		for (int i = start; i < end; i++) {
+			if (buffer.get(i) == ';')
+				return parseKiller(start, end);
+		}
+		return parseStd(start, end);
+	}
+
+	// parses a row-major string of cell symbols.
+	private StdSudokuGrid parseStd(int start, int end) throws IOException {
+		int cells = end - start;
+		int size = (int) Math.round(Math.sqrt(cells));
+		if (size * size != cells)
+			throw error(start, "expected size * size cells, got " + cells);
+		if (size > StdSudokuGrid.MAX_SIZE)
+			throw error(start, "grid size " + size + " is larger than " + StdSudokuGrid.MAX_SIZE);
+
+		StdSudokuGrid grid = new StdSudokuGrid();
+		initGrid(grid, size, start);
+
+		for (int i = 0; i < cells; i++) {
+			int value = symbolValue(buffer.get(start + i));
+			if (value < 0 || value > size)
+				throw error(start + i, "invalid cell symbol '" + (char) buffer.get(start + i) + "'");
+			grid.grid[i / size][i % size] = value;
+		}
+		grid.initMasks();
+		return grid;
+	}
+
+	// parses size;total=cell,cell,...;total=cell,...
+	private KillerSudokuGrid parseKiller(int start, int end) throws IOException {
+		int[] pos = { start };
+
+		int size = readInt(pos, end);
+		KillerSudokuGrid grid = new KillerSudokuGrid();
+		initGrid(grid, size, start);
+		boolean[] caged = new boolean[size * size];
+
+		while (pos[0] < end) {
+			expect(pos, end, ';');
+			int total = readInt(pos, end);
+			expect(pos, end, '=');
+
+			KillerSudokuGrid.CagePair cp = new KillerSudokuGrid.CagePair(total);
+			while (true) {
+				int cellStart = pos[0];
+				int cell = readInt(pos, end);
+				if (cell >= size * size)
+					throw error(cellStart, "cell " + cell + " is outside the grid");
+				if (caged[cell])
+					throw error(cellStart, "cell " + cell + " is already in a cage");
+				caged[cell] = true;
+				cp.addCell(new KillerSudokuGrid.Cell(cell / size, cell % size));
+
+				if (pos[0] < end && buffer.get(pos[0]) == ',')
+					pos[0]++;
+				else
+					break;
+			}
+			grid.cagePairList.add(cp);
+		}
+
+		grid.noOfCages = grid.cagePairList.size();
+		grid.buildCageIndex();
+		grid.initMasks();
+		return grid;
+	}
+
+	// sets up an empty grid using the values 1 to size.
+	private void initGrid(StdSudokuGrid grid, int size, int start) throws IOException {
+		int boxSize = (int) Math.sqrt(size);
+		if (size < 1 || boxSize * boxSize != size)
+			throw error(start, "grid size " + size + " is not a square");
+		if (size > StdSudokuGrid.MAX_SIZE)
+			throw error(start, "grid size " + size + " is larger than " + StdSudokuGrid.MAX_SIZE);
+
+		grid.size = size;
+		grid.grid = new int[size][size];
+		grid.validNumbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			grid.validNumbers[i] = i + 1;
+		}
+	}
+
+	// reads a non-negative integer at pos[0] and moves past it.
+	private int readInt(int[] pos, int end) throws IOException {
+		int i = pos[0];
+		int value = 0;
+		while (i < end && buffer.get(i) >= '0' && buffer.get(i) <= '9') {
+			int digit = buffer.get(i) - '0';
+			if (value > (Integer.MAX_VALUE - digit) / 10)
+				throw error(pos[0], "number is too large");
+			value = value * 10 + digit;
+			i++;
+		}
+		if (i == pos[0])
+			throw error(i, "expected a number");
+		pos[0] = i;
+		return value;
+	}
+
+	private void expect(int[] pos, int end, char c) throws IOException {
+		if (pos[0] >= end || buffer.get(pos[0]) != c)
+			throw error(pos[0], "expected '" + c + "'");
+		pos[0]++;
+	}
+
+	// value of a cell symbol, -1 if it isn't one.
+	static int symbolValue(byte b) {
+		return b >= 0 ? SYMBOL_VALUES[b] : -1;
+	}
+
+	private IOException error(int index, String message) {
+		// column is counted from the start of the line.
+		int lineStart = index;
+		while (lineStart > 0 && buffer.get(lineStart - 1) != '\n') {
+			lineStart--;
+		}
+		return new IOException("line " + lineNumber + ", column " + (index - lineStart + 1) + ": " + message);
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (channel != null)
+			channel.close();
+	}
+} // end of class CompactPuzzleReader
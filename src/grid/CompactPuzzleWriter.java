@@ -0,0 +1,60 @@
+/**
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+package grid;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes grids one per line in the cell format read by CompactPuzzleReader,
+ * so a corpus of solutions lines up with the corpus of puzzles it came from.
+ */
+public class CompactPuzzleWriter implements Closeable {
+	private static final byte[] SYMBOLS = CompactPuzzleReader.SYMBOLS.getBytes(StandardCharsets.US_ASCII);
+
+	private final OutputStream out;
+	// one line, reused between grids of the same size.
+	private byte[] line = new byte[0];
+
+	public CompactPuzzleWriter(String filename) throws IOException {
+		out = new BufferedOutputStream(new FileOutputStream(filename), 1 << 16);
+	}
+
+	// writes to a stream, closed by close().
+	public CompactPuzzleWriter(OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes the cells of the grid as one line, empty cells as '.'.
+	 *
+	 * @throws IOException If a value has no symbol in the format.
+	 */
+	public void write(StdSudokuGrid grid) throws IOException {
+		int size = grid.size;
+		if (line.length != size * size + 1) {
+			line = new byte[size * size + 1];
+			line[size * size] = '\n';
+		}
+
+		for (int r = 0; r < size; r++) {
+			for (int c = 0; c < size; c++) {
+				int value = grid.grid[r][c];
+				if (value < 0 || value >= SYMBOLS.length)
+					throw new IOException("value " + value + " can't be written in the compact format");
+				line[r * size + c] = SYMBOLS[value];
+			}
+		}
+		out.write(line);
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+} // end of class CompactPuzzleWriter
@@ -0,0 +1,195 @@
+/**
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+package grid;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Tokeniser for the grid files read by initGrid(). The whole file is read into
+ * a byte buffer kept by the thread for the next file, and integers are parsed
+ * in place from its bytes, so no line strings or split arrays are built.
+ *
+ * Numbers on a line are separated by spaces or tabs. Errors name the file, line
+ * and column of the offending byte.
+ */
+class GridFileParser {
+	// largest buffer a thread keeps between files. A larger file is read into
+	// a buffer of its own, dropped once it is parsed.
+	static final int MAX_KEPT_BUFFER = 1 << 20;
+
+	// buffer reused by every file parsed on the thread, grown as needed up to
+	// MAX_KEPT_BUFFER.
+	private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[1 << 16];
+		}
+	};
+
+	private final String filename;
+	private final byte[] data;
+	private final int length;
+
+	// position of the next byte to read.
+	private int position = 0;
+	// line of position, from 1, and the position its line starts at.
+	private int lineNumber = 1;
+	private int lineStart = 0;
+	// position the last number read starts at.
+	private int tokenStart = 0;
+
+	GridFileParser(String filename) throws IOException {
+		this.filename = filename;
+
+		try (FileInputStream in = new FileInputStream(filename); FileChannel channel = in.getChannel()) {
+			long fileSize = channel.size();
+			if (fileSize > Integer.MAX_VALUE)
+				throw new IOException(filename + ": file too large");
+
+			byte[] buffer = buffers.get();
+			if (fileSize > MAX_KEPT_BUFFER) {
+				buffer = new byte[(int) fileSize];
+			} else if (buffer.length < fileSize) {
+				buffer = new byte[(int) Math.min(Math.max(fileSize, (long) buffer.length * 2), MAX_KEPT_BUFFER)];
+				buffers.set(buffer);
+			}
+
+			ByteBuffer target = ByteBuffer.wrap(buffer, 0, (int) fileSize);
+			while (target.hasRemaining() && channel.read(target) >= 0) {
+			}
+			data = buffer;
+			length = target.position();
+		}
+	}
+
+	// size of the buffer kept by the calling thread for the next file.
+	static int keptBufferSize() {
+		return buffers.get().length;
+	}
+
+	// parses bytes already in memory, name is used in the errors.
+	GridFileParser(String name, byte[] data, int length) {
+		if (length < 0 || length > data.length)
+			throw new IllegalArgumentException("length " + length + " is outside the data");
+		this.filename = name;
+		this.data = data;
+		this.length = length;
+	}
+
+	// true once only blank lines are left.
+	boolean atEnd() {
+		skipBlankLines();
+		return position >= length;
+	}
+
+	// true if the current line has another number before its end.
+	boolean hasMoreOnLine() {
+		skipSpaces();
+		return position < length && data[position] != '\n' && data[position] != '\r';
+	}
+
+	// numbers left on the current line, without moving past them.
+	int countIntsOnLine() {
+		int count = 0;
+		boolean inToken = false;
+		for (int i = position; i < length && data[i] != '\n' && data[i] != '\r'; i++) {
+			boolean space = data[i] == ' ' || data[i] == '\t';
+			if (!space && !inToken)
+				count++;
+			inToken = !space;
+		}
+		return count;
+	}
+
+	// reads an optionally signed integer, after any spaces before it.
+	int readInt() throws IOException {
+		skipSpaces();
+		int start = tokenStart = position;
+		boolean negative = false;
+		if (position < length && (data[position] == '-' || data[position] == '+')) {
+			negative = data[position] == '-';
+			position++;
+		}
+
+		long value = 0;
+		int digits = position;
+		while (position < length && data[position] >= '0' && data[position] <= '9') {
+			value = value * 10 + (data[position] - '0');
+			if (value > (long) Integer.MAX_VALUE + 1)
+				throw error(start, "number out of range");
+			position++;
+		}
+		if (position == digits)
+			throw error(start, "expected a number");
+		if (!negative && value > Integer.MAX_VALUE)
+			throw error(start, "number out of range");
+		return (int) (negative ? -value : value);
+	}
+
+	// reads a byte that must be c.
+	void expect(char c) throws IOException {
+		if (position >= length || data[position] != c)
+			throw error(position, "expected '" + c + "'");
+		position++;
+	}
+
+	// moves to the start of the next line, the rest of the current line must be
+	// blank.
+	void endLine() throws IOException {
+		if (hasMoreOnLine())
+			throw error(position, "unexpected '" + (char) data[position] + "'");
+		if (position < length && data[position] == '\r')
+			position++;
+		if (position < length && data[position] == '\n')
+			newLine();
+	}
+
+	// moves to the start of the next non-blank line.
+	private void skipBlankLines() {
+		while (true) {
+			int i = position;
+			while (i < length && (data[i] == ' ' || data[i] == '\t' || data[i] == '\r')) {
+				i++;
+			}
+			if (i < length && data[i] == '\n') {
+				position = i;
+				newLine();
+			} else {
+				if (i >= length)
+					position = i;
+				return;
+			}
+		}
+	}
+
+	private void skipSpaces() {
+		while (position < length && (data[position] == ' ' || data[position] == '\t')) {
+			position++;
+		}
+	}
+
+	private void newLine() {
+		position++;
+		lineNumber++;
+		lineStart = position;
+	}
+
+	// error at a position of the current line.
+	IOException error(int index, String message) {
+		return new IOException(filename + ": line " + lineNumber + ", column " + (index - lineStart + 1) + ": " + message);
+	}
+
+	// error at the start of the current line.
+	IOException lineError(String message) {
+		return error(lineStart, message);
+	}
+
+	// error at the start of the last number read.
+	IOException error(String message) {
+		return error(tokenStart, message);
+	}
+} // end of class GridFileParser
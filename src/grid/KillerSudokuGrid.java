@@ -3,280 +3,274 @@
  */
 package grid;
 
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Scanner;
 
 /**
- * Class implementing the grid for Killer Sudoku. Extends SudokuGrid (hence
- * implements all abstract methods in that abstract class). You will need to
+ * Class implementing the grid for Killer Sudoku. Extends StdSudokuGrid (hence
+ * implements all abstract methods in SudokuGrid and shares the row, column and
+ * box bookkeeping of standard Sudoku). You will need to
  * complete the implementation for this for task E and subsequently use it to
  * complete the other classes. See the comments in SudokuGrid to understand what
  * each overriden method is aiming to do (and hence what you should aim for in
  * your implementation).
  */
-public class KillerSudokuGrid extends SudokuGrid {
-	public int[][] grid;
-	public int size;
+public class KillerSudokuGrid extends StdSudokuGrid {
 	public int noOfCages;
-	public int[] validNumbers;
 	public ArrayList<CagePair> cagePairList = new ArrayList<CagePair>();
 
+	// index into cagePairList of the cage holding each cell (row * size + col),
+	// -1 if the cell isn't part of any cage.
+	public int[] cageOf;
+	// running state of each cage, updated on every setValue and clearValue.
+	public int[] cageSum;
+	public int[] cageFilled;
+	// bit i is set when validNumbers[i] is already used in the cage.
+	public long[] cageUsed;
+
 	public KillerSudokuGrid() {
 		super();
 	} // end of KillerSudokuGrid()
 
-	/* ********************************************************* */
+	// copy constructor, the cages are shared as they never change.
+	protected KillerSudokuGrid(KillerSudokuGrid other) {
+		super(other);
+		noOfCages = other.noOfCages;
+		cagePairList = other.cagePairList;
+		cageOf = other.cageOf;
+
+		if (other.cageSum != null) {
+			cageSum = other.cageSum.clone();
+			cageFilled = other.cageFilled.clone();
+			cageUsed = other.cageUsed.clone();
+		}
+	} // end of KillerSudokuGrid()
 
 	@Override
-	public void initGrid(String filename) throws FileNotFoundException, IOException {
-		File myObj = new File(filename);
-		Scanner myReader = new Scanner(myObj);
-		int lineCount = 0;
-
-		while (myReader.hasNextLine()) {
-			String data = myReader.nextLine();
-
-			// process first line in a file
-			if (lineCount == 0) {
-				size = Integer.parseInt(data);
-				grid = new int[size][size];
-			}
-			// process second line in a file: valid numbers.
-			else if (lineCount == 1) {
-				String validNumsStr[] = data.split(" ");
-				int arrLength = validNumsStr.length;
-				validNumbers = new int[arrLength];
-
-				for (int i = 0; i < arrLength; i++) {
-					validNumbers[i] = Integer.parseInt(validNumsStr[i]);
-				}
-				// sort the valid numbers.
-				Arrays.sort(validNumbers);
-			}
-			// process third line in a file. has number of cages.
-			else if (lineCount == 2) {
-				noOfCages = Integer.parseInt(data);
-			}
-			// process the remaining lines having cage constraints.
-			else {
-				String[] arr = data.split(" ");
-				int arrlen = arr.length;
+	public KillerSudokuGrid copy() {
+		return new KillerSudokuGrid(this);
+	} // end of copy()
 
-				// get the cage total.
-				int total = Integer.parseInt(arr[0].split(",")[0]);
-
-				// initalize CagePair
-				CagePair cp = new CagePair(total);
-
-				// skip the 0th index as it has already been processed
-				for (int i = 1; i < arrlen; i++) {
-					int row = Integer.parseInt(arr[i].split(",")[0]);
-					int col = Integer.parseInt(arr[i].split(",")[1]);
+	/* ********************************************************* */
 
-					cp.addCell(new Cell(row, col));
-				}
-				cagePairList.add(cp);
+	@Override
+	void readGrid(GridFileParser parser) throws IOException {
+
+		readHeader(parser);
+
+		// third line: number of cages.
+		noOfCages = parser.readInt();
+		if (noOfCages < 0)
+			throw parser.error("number of cages must not be negative");
+		parser.endLine();
+
+		// remaining lines are the cages, as "total row,col row,col ...".
+		boolean[] caged = new boolean[size * size];
+		while (!parser.atEnd()) {
+			if (cagePairList.size() == noOfCages)
+				throw parser.lineError("more cages than the " + noOfCages + " declared");
+			CagePair cp = new CagePair(parser.readInt());
+			if (!parser.hasMoreOnLine())
+				throw parser.error("cage has no cells");
+
+			while (parser.hasMoreOnLine()) {
+				int row = parser.readInt();
+				if (row < 0 || row >= size)
+					throw parser.error("row " + row + " is outside the grid");
+				parser.expect(',');
+				int col = parser.readInt();
+				if (col < 0 || col >= size)
+					throw parser.error("column " + col + " is outside the grid");
+				if (caged[row * size + col])
+					throw parser.error("cell " + row + "," + col + " is already in a cage");
+				caged[row * size + col] = true;
+
+				cp.addCell(new Cell(row, col));
 			}
-			// increment the processed line in a file.
-			lineCount++;
+			parser.endLine();
+			cagePairList.add(cp);
 		}
-		myReader.close();
+		if (cagePairList.size() != noOfCages)
+			throw parser.lineError("expected " + noOfCages + " cages, got " + cagePairList.size());
 
-	} // end of initBoard()
+		buildCageIndex();
+		initMasks();
+	} // end of readGrid()
 
+	// sets up an empty grid with no cages, they are added by addCage().
 	@Override
-	public void outputGrid(String filename) throws FileNotFoundException, IOException {
-		try {
-			File myObj = new File(filename);
-
-			if (myObj.createNewFile()) {
-				System.out.println("File created: " + myObj.getName());
-			}
-
-			FileWriter myWriter = new FileWriter(filename);
-
-			myWriter.write(this.toString());
-			myWriter.close();
-		} catch (IOException e) {
-			System.out.println("An error occurred.");
-			e.printStackTrace();
+	public void initEmptyGrid(int size, int[] validNumbers) throws IOException {
+		this.size = size;
+		cagePairList = new ArrayList<CagePair>();
+		noOfCages = 0;
+		buildCageIndex();
+		super.initEmptyGrid(size, validNumbers);
+	} // end of initEmptyGrid()
+
+	// adds a cage over the cells (row * size + col) of a grid set up by
+	// initEmptyGrid().
+	public void addCage(int total, int[] cells) {
+		CagePair cp = new CagePair(total);
+		for (int cell : cells) {
+			cp.addCell(new Cell(cell / size, cell % size));
 		}
-	} // end of outputBoard()
+		cagePairList.add(cp);
+		noOfCages = cagePairList.size();
+
+		buildCageIndex();
+		rebuildMasks();
+	} // end of addCage()
 
+	// writes the cages in the format read by initGrid(), cell values aren't
+	// part of it.
 	@Override
-	public String toString() {
-		int gridLen = grid.length;
+	public void outputPuzzle(String filename) throws FileNotFoundException, IOException {
 		StringBuilder sb = new StringBuilder();
-
-		for (int i = 0; i < gridLen; i++) {
-			for (int j = 0; j < gridLen; j++) {
-				// last column not need to attach comma.
-				if (j == gridLen - 1)
-					sb.append(grid[i][j]);
-				else
-					sb.append(grid[i][j] + ",");
+		appendHeader(sb);
+		sb.append(cagePairList.size()).append('\n');
+		for (CagePair cagePair : cagePairList) {
+			sb.append(cagePair.total);
+			for (Cell cell : cagePair.cells) {
+				sb.append(' ').append(cell.row).append(',').append(cell.col);
 			}
 			sb.append('\n');
 		}
-		return sb.toString();
-	} // end of toString()
 
-	// might have to check if it fails for 0
-	@Override
-	public boolean validate() {
-		for (int i = 0; i < size; i++) {
-			for (int j = 0; j < size; j++) {
-				// validate each cell against the constraints.
-				if (!isOkAfterInsert(i, j, grid[i][j]))
-					return false;
-			}
+		try (FileOutputStream out = new FileOutputStream(filename)) {
+			out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
 		}
-		return true;
-	} // end of validate()
-
-	// combined methods to check the constraints
-	private boolean isOkAfterInsert(int row, int col, int number) {
-		if (checkNumberIsValid(number) && isInRow(row, number) == 1 && isInCol(col, number) == 1
-				&& isInBox(row, col, number) == 1 && isCagesTotalOk(row, col, number)) {
-			return true;
+	} // end of outputPuzzle()
+
+	// maps every cell to its cage and allocates the running cage state.
+	void buildCageIndex() {
+		int noOfCagePairs = cagePairList.size();
+		cageOf = new int[size * size];
+		cageSum = new int[noOfCagePairs];
+		cageFilled = new int[noOfCagePairs];
+		cageUsed = new long[noOfCagePairs];
+
+		Arrays.fill(cageOf, -1);
+		for (int i = 0; i < noOfCagePairs; i++) {
+			for (Cell cell : cagePairList.get(i).cells) {
+				cageOf[cell.row * size + cell.col] = i;
+			}
 		}
-		return false;
 	}
 
-	// checks if the given number to insert is in the list of valid numbers.
-	public boolean checkNumberIsValid(int number) {
-
-		for (int n : validNumbers) {
-			if (n == number)
-				return true;
+	@Override
+	public void rebuildMasks() {
+		super.rebuildMasks();
+
+		Arrays.fill(cageSum, 0);
+		Arrays.fill(cageFilled, 0);
+		Arrays.fill(cageUsed, 0);
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				if (grid[row][col] != 0)
+					addToCage(row, col, grid[row][col]);
+			}
 		}
-		return false;
 	}
 
-	// check if the number is in that row
-	public int isInRow(int row, int number) {
-		int count = 0;
-		for (int i = 0; i < size; i++) {
-			if (grid[row][i] == number)
-				count++;
-		}
-		return count;
+	@Override
+	public void setValue(int row, int col, int number) {
+		super.setValue(row, col, number);
+		addToCage(row, col, number);
 	}
 
-	// check if the number is in that column.
-	public int isInCol(int col, int number) {
-		int count = 0;
-		for (int i = 0; i < size; i++) {
-			if (grid[i][col] == number)
-				count++;
+	@Override
+	public void clearValue(int row, int col) {
+		int number = grid[row][col];
+		super.clearValue(row, col);
+
+		int cage = cageOf[row * size + col];
+		if (cage >= 0 && number != 0) {
+			cageSum[cage] -= number;
+			cageFilled[cage]--;
+			int index = symbolIndex(number);
+			if (index >= 0)
+				cageUsed[cage] &= ~(1L << index);
 		}
-		return count;
 	}
 
-	// check if the possible number is in the box.
-	public int isInBox(int row, int col, int number) {
-		int boxSize = (int) Math.sqrt(size);
-		int r = row - row % boxSize;
-		int c = col - col % boxSize;
-
-		int count = 0;
-
-		for (int i = r; i < r + boxSize; i++) {
-
-			for (int j = c; j < c + boxSize; j++) {
-				if (grid[i][j] == number)
-					count++;
-			}
+	// adds the number placed in the cell to the state of its cage.
+	private void addToCage(int row, int col, int number) {
+		int cage = cageOf[row * size + col];
+		if (cage >= 0) {
+			cageSum[cage] += number;
+			cageFilled[cage]++;
+			int index = symbolIndex(number);
+			if (index >= 0)
+				cageUsed[cage] |= 1L << index;
 		}
-		return count;
 	}
 
-	// gets the maximum value from valid number list.
-	private int getMaxValidNumber() {
-		return validNumbers[validNumbers.length - 1];
-
-	}
+	@Override
+	public String findViolation() {
+		// rows, columns and boxes are checked by the standard grid, so every
+		// cell holds a valid number from here on.
+		String violation = super.findViolation();
+		if (violation != null)
+			return violation;
+
+		for (int i = 0; i < cageOf.length; i++) {
+			if (cageOf[i] < 0)
+				return "cell (" + i / size + "," + i % size + ") is in no cage";
+		}
 
-	// gets the minimum value from the valid number list.
-	private int getMinValidNumber() {
-		return validNumbers[0];
-	}
+		// each cage is checked once: distinct numbers adding up to its total.
+		for (int i = 0; i < cagePairList.size(); i++) {
+			CagePair cagePair = cagePairList.get(i);
+			int sum = 0;
+			long seen = 0;
+			for (Cell cell : cagePair.cells) {
+				int number = grid[cell.row][cell.col];
+				long bit = 1L << symbolIndex(number);
+				if ((seen & bit) != 0)
+					return "cage " + i + " has " + number + " twice";
+				seen |= bit;
+				sum += number;
+			}
+			if (sum != cagePair.total)
+				return "cage " + i + " adds up to " + sum + " instead of " + cagePair.total;
+		}
+		return null;
+	} // end of findViolation()
 
 	// check if it satisfies cage constraint
 	public boolean isCagesTotalOk(int row, int col, int number) {
-
-		ArrayList<CagePair> selectedCageConstraintList = new ArrayList<CagePair>();
-		int sizeOfCageConstraintList = this.cagePairList.size();
-
-		for (int l = 0; l < sizeOfCageConstraintList; l++) {
-
-			int constraintLength = this.cagePairList.get(l).size;
-
-			boolean xyFound = false;
-
-			for (int m = 0; m < constraintLength; m++) {
-
-				int posX = this.cagePairList.get(l).cells.get(m).row;
-
-				int posY = this.cagePairList.get(l).cells.get(m).col;
-				if (posX == row && posY == col) {
-					xyFound = true;
-				}
-			}
-			if (xyFound == true) {
-
-				selectedCageConstraintList.add(this.cagePairList.get(l));
-
-				break;
-
-			}
-
+		int cage = cageOf[row * size + col];
+		if (cage < 0)
+			return false;
+
+		CagePair cagePair = cagePairList.get(cage);
+		int cellsCurrentTotal = cageSum[cage];
+		int cellsFilled = cageFilled[cage];
+
+		// the cell's current value is being replaced.
+		int current = grid[row][col];
+		if (current != 0) {
+			cellsCurrentTotal -= current;
+			cellsFilled--;
 		}
 
-		boolean isCellFound = false;
-		for (CagePair cagePair : selectedCageConstraintList) {
-			ArrayList<Cell> cells = cagePair.cells;
-
-			// the expected total of the cage pairs.
-			int cellsExpectedTotal = cagePair.total;
-
-			// stores the total values of cage pairs.
-			int cellsCurrentTotal = 0;
-			boolean isCagesPartiallyFilled = false;
-
-			for (Cell cell : cells) {
-				if (cell.row == row && cell.col == col) {
-					cellsCurrentTotal += number;
-					isCellFound = true;
-				} else {
-
-					// check if any cell's value is 0 which means partially filled.
-					int cellValue = grid[cell.row][cell.col];
-					if (cellValue == 0)
-						isCagesPartiallyFilled = true;
-					else {
-						cellsCurrentTotal += cellValue;
-					}
-				}
-			}
+		// values in a cage must be unique.
+		int index = symbolIndex(number);
+		if (number != current && index >= 0 && (cageUsed[cage] & (1L << index)) != 0)
+			return false;
 
-			// check if the existing cell satisfies the constraint.
-			// less is when all the cages are partially filled
-			if (isCellFound) {
-				if (isCagesPartiallyFilled)
-					return cellsCurrentTotal < cellsExpectedTotal;
+		cellsCurrentTotal += number;
 
-				// else should always satisfy the constraint.
-				return cellsCurrentTotal == cellsExpectedTotal;
-			}
-		}
+		// less is when the cage is still partially filled.
+		if (cellsFilled + 1 < cagePair.size)
+			return cellsCurrentTotal < cagePair.total;
 
-		return false;
+		// else should always satisfy the constraint.
+		return cellsCurrentTotal == cagePair.total;
 	}
 
 	// Pair class to store cages location and total
@@ -3,12 +3,12 @@
  */
 package grid;
 
-import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.Scanner;
 
 /**
  * Class implementing the grid for standard Sudoku. Extends SudokuGrid (hence
@@ -19,182 +19,463 @@ import java.util.Scanner;
  * your implementation).
  */
 public class StdSudokuGrid extends SudokuGrid {
+	// largest grid size, the masks hold one bit per valid number.
+	public static final int MAX_SIZE = Long.SIZE;
+
 	public int[][] grid;
 	public int size = 0;
 	public int[] validNumbers;
+	public int boxSize;
+
+	// occupancy masks per row, column and box. Bit i is set when
+	// validNumbers[i] is already placed in that unit.
+	public long[] rowMask;
+	public long[] colMask;
+	public long[] boxMask;
+	// mask with one bit for every valid number.
+	public long fullMask;
+
+	// text of the grid, reused by every grid written on the thread.
+	private static final ThreadLocal<byte[]> textBuffers = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[0];
+		}
+	};
+
+	// index in validNumbers of every number from symbolBase on, -1 if it isn't
+	// valid. Only used when the valid numbers are close together.
+	private int[] symbolDirect;
+	private int symbolBase;
+	// otherwise an open addressing table from valid number to its index, so the
+	// lookup stays O(1) and its memory O(size) however large the numbers are.
+	// Slots hold index + 1, 0 for an empty slot. Built by initMasks().
+	private int[] symbolKeys;
+	private int[] symbolSlots;
+	private int symbolHashMask;
 
 	public StdSudokuGrid() {
 		super();
 	} // end of StdSudokuGrid()
 
+	// copy constructor, the valid numbers are shared as they never change.
+	protected StdSudokuGrid(StdSudokuGrid other) {
+		super();
+		size = other.size;
+		validNumbers = other.validNumbers;
+		boxSize = other.boxSize;
+		fullMask = other.fullMask;
+		symbolDirect = other.symbolDirect;
+		symbolBase = other.symbolBase;
+		symbolKeys = other.symbolKeys;
+		symbolSlots = other.symbolSlots;
+		symbolHashMask = other.symbolHashMask;
+
+		if (other.grid != null) {
+			grid = new int[size][];
+			for (int i = 0; i < size; i++) {
+				grid[i] = other.grid[i].clone();
+			}
+		}
+		if (other.rowMask != null) {
+			rowMask = other.rowMask.clone();
+			colMask = other.colMask.clone();
+			boxMask = other.boxMask.clone();
+		}
+	} // end of StdSudokuGrid()
+
 	/* ********************************************************* */
 
 	@Override
 	public void initGrid(String filename) throws FileNotFoundException, IOException {
-		File myObj = new File(filename);
-		Scanner myReader = new Scanner(myObj);
-		int lineCount = 0;
-
-		// parse the contents of the file.
-		while (myReader.hasNextLine()) {
-			String data = myReader.nextLine();
-
-			// process first line
-			if (lineCount == 0) {
-				size = Integer.parseInt(data);
-				grid = new int[size][size];
+		readGrid(new GridFileParser(filename));
+	} // end of initBoard()
+
+	@Override
+	public void initGrid(String name, byte[] data, int length) throws IOException {
+		readGrid(new GridFileParser(name, data, length));
+	} // end of initGrid()
+
+	// reads the grid file format, overridden for Killer Sudoku.
+	void readGrid(GridFileParser parser) throws IOException {
+		readHeader(parser);
+
+		// rest of the lines partially fill the grid, as "row,col value".
+		while (!parser.atEnd()) {
+			int row = parser.readInt();
+			if (row < 0 || row >= size)
+				throw parser.error("row " + row + " is outside the grid");
+			parser.expect(',');
+			int col = parser.readInt();
+			if (col < 0 || col >= size)
+				throw parser.error("column " + col + " is outside the grid");
+
+			// add the number to the respective location.
+			int value = parser.readInt();
+			if (Arrays.binarySearch(validNumbers, value) < 0)
+				throw parser.error(value + " is not a valid number");
+			grid[row][col] = value;
+			parser.endLine();
+		}
+
+		initMasks();
+	} // end of readGrid()
+
+	// reads the first two lines of a grid file, shared by both puzzle types:
+	// the grid size, then its valid numbers separated by spaces. Both are
+	// checked before the empty grid is allocated.
+	protected void readHeader(GridFileParser parser) throws IOException {
+		// first line: grid size.
+		size = parser.readInt();
+		int boxSize = (int) Math.sqrt(size);
+		if (size < 1 || boxSize * boxSize != size)
+			throw parser.error("grid size " + size + " is not a square");
+		if (size > MAX_SIZE)
+			throw parser.error("grid size " + size + " is larger than " + MAX_SIZE);
+		parser.endLine();
+
+		// second line: one valid number per value of a cell.
+		int noOfNumbers = parser.countIntsOnLine();
+		if (noOfNumbers != size)
+			throw parser.lineError("expected " + size + " valid numbers, got " + noOfNumbers);
+		validNumbers = new int[noOfNumbers];
+		for (int i = 0; i < noOfNumbers; i++) {
+			validNumbers[i] = parser.readInt();
+			if (validNumbers[i] == 0)
+				throw parser.error("0 marks an empty cell, it can't be a valid number");
+		}
+
+		// sort arrays, a repeated number is then next to itself.
+		Arrays.sort(validNumbers);
+		for (int i = 1; i < noOfNumbers; i++) {
+			if (validNumbers[i] == validNumbers[i - 1])
+				throw parser.lineError("valid number " + validNumbers[i] + " is repeated");
+		}
+		parser.endLine();
+
+		grid = new int[size][size];
+	} // end of readHeader()
+
+	// sets up an empty grid over the valid numbers, for puzzles built in memory
+	// instead of read by initGrid().
+	public void initEmptyGrid(int size, int[] validNumbers) throws IOException {
+		int boxSize = (int) Math.sqrt(size);
+		if (size < 1 || boxSize * boxSize != size)
+			throw new IOException("grid size " + size + " is not a square");
+
+		this.size = size;
+		this.validNumbers = validNumbers.clone();
+		Arrays.sort(this.validNumbers);
+		grid = new int[size][size];
+		initMasks();
+	} // end of initEmptyGrid()
+
+	@Override
+	public StdSudokuGrid copy() {
+		return new StdSudokuGrid(this);
+	} // end of copy()
+
+	// allocates the unit masks and fills them from the current grid values.
+	protected void initMasks() throws IOException {
+		// masks are stored in a long, one bit per valid number.
+		if (validNumbers.length > MAX_SIZE)
+			throw new IOException("Grids with more than " + MAX_SIZE + " values are not supported.");
+
+		boxSize = (int) Math.sqrt(size);
+		rowMask = new long[size];
+		colMask = new long[size];
+		boxMask = new long[size];
+		fullMask = validNumbers.length == Long.SIZE ? -1L : (1L << validNumbers.length) - 1;
+		initSymbolIndex();
+		rebuildMasks();
+	}
+
+	// builds the lookup of symbolIndex(): a direct table when the numbers span
+	// at most a few times their count, else a hash table at most half full.
+	private void initSymbolIndex() {
+		Arrays.sort(validNumbers);
+
+		symbolDirect = null;
+		symbolKeys = null;
+		symbolSlots = null;
+		long range = validNumbers.length == 0 ? 0
+				: (long) validNumbers[validNumbers.length - 1] - validNumbers[0] + 1;
+		if (range <= 4L * Math.max(validNumbers.length, Long.SIZE)) {
+			symbolBase = validNumbers.length == 0 ? 0 : validNumbers[0];
+			symbolDirect = new int[(int) range];
+			Arrays.fill(symbolDirect, -1);
+			for (int i = 0; i < validNumbers.length; i++) {
+				symbolDirect[validNumbers[i] - symbolBase] = i;
 			}
-			// process second line. valid inputs
-			else if (lineCount == 1) {
-				// split the content by space
-				String validNumsStr[] = data.split(" ");
-				int arrLength = validNumsStr.length;
-				validNumbers = new int[arrLength];
-
-				// get the list of valid inputs
-				for (int i = 0; i < arrLength; i++) {
-					validNumbers[i] = Integer.parseInt(validNumsStr[i]);
-				}
+			return;
+		}
+
+		int capacity = Integer.highestOneBit(Math.max(2, validNumbers.length) * 2 - 1) * 2;
+		symbolKeys = new int[capacity];
+		symbolSlots = new int[capacity];
+		symbolHashMask = capacity - 1;
 
-				// sort arrays.
-				Arrays.sort(validNumbers);
+		for (int i = 0; i < validNumbers.length; i++) {
+			int slot = symbolHash(validNumbers[i]);
+			while (symbolSlots[slot] != 0) {
+				slot = (slot + 1) & symbolHashMask;
 			}
-			// process rest of the line for partially filling grid.
-			else {
-				String[] arr = data.split(" ");
-				int row = Integer.parseInt(arr[0].split(",")[0]);
-				int col = Integer.parseInt(arr[0].split(",")[1]);
-
-				// add the number to the respective location.
-				grid[row][col] = Integer.parseInt(arr[1]);
+			symbolKeys[slot] = validNumbers[i];
+			symbolSlots[slot] = i + 1;
+		}
+	}
+
+	private int symbolHash(int number) {
+		int h = number * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & symbolHashMask;
+	}
+
+	// recomputes the unit masks from scratch. Needed whenever grid is
+	// modified directly instead of through setValue and clearValue.
+	public void rebuildMasks() {
+		Arrays.fill(rowMask, 0);
+		Arrays.fill(colMask, 0);
+		Arrays.fill(boxMask, 0);
+
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				int index = symbolIndex(grid[row][col]);
+				if (index >= 0) {
+					long bit = 1L << index;
+					rowMask[row] |= bit;
+					colMask[col] |= bit;
+					boxMask[boxIndex(row, col)] |= bit;
+				}
 			}
-			lineCount++;
 		}
-		myReader.close();
+	}
 
-	} // end of initBoard()
+	// places the number in the cell and marks it as used in the cell's units.
+	public void setValue(int row, int col, int number) {
+		if (grid[row][col] != 0)
+			clearValue(row, col);
+
+		grid[row][col] = number;
+		int index = symbolIndex(number);
+		if (index >= 0) {
+			long bit = 1L << index;
+			rowMask[row] |= bit;
+			colMask[col] |= bit;
+			boxMask[boxIndex(row, col)] |= bit;
+		}
+	}
 
-	@Override
-	public void outputGrid(String filename) throws FileNotFoundException, IOException {
-		try {
-			File myObj = new File(filename);
+	// empties the cell and releases its number in the cell's units.
+	public void clearValue(int row, int col) {
+		int index = symbolIndex(grid[row][col]);
+		grid[row][col] = 0;
+		if (index >= 0) {
+			long bit = ~(1L << index);
+			rowMask[row] &= bit;
+			colMask[col] &= bit;
+			boxMask[boxIndex(row, col)] &= bit;
+		}
+	}
 
-			// create file if doesn't exist.
-			if (myObj.createNewFile()) {
-				System.out.println("File created: " + myObj.getName());
-			}
+	// mask of the valid numbers that can still be placed in the cell.
+	public long candidateMask(int row, int col) {
+		return fullMask & ~(rowMask[row] | colMask[col] | boxMask[boxIndex(row, col)]);
+	}
+
+	// index of the box that contains the cell.
+	public int boxIndex(int row, int col) {
+		return (row / boxSize) * boxSize + col / boxSize;
+	}
 
-			FileWriter myWriter = new FileWriter(filename);
+	// position of the number in validNumbers, or -1 if it isn't valid.
+	public int symbolIndex(int number) {
+		if (symbolDirect != null) {
+			int offset = number - symbolBase;
+			return offset >= 0 && offset < symbolDirect.length ? symbolDirect[offset] : -1;
+		}
+
+		for (int slot = symbolHash(number);; slot = (slot + 1) & symbolHashMask) {
+			if (symbolSlots[slot] == 0)
+				return -1;
+			if (symbolKeys[slot] == number)
+				return symbolSlots[slot] - 1;
+		}
+	}
 
-			myWriter.write(this.toString());
-			myWriter.close();
-		} catch (IOException e) {
-			System.out.println("An error occurred.");
-			e.printStackTrace();
+	@Override
+	public void outputGrid(String filename) throws FileNotFoundException, IOException {
+		try (FileOutputStream out = new FileOutputStream(filename)) {
+			writeGrid(out);
 		}
 	} // end of outputBoard()
 
 	@Override
-	public String toString() {
+	public void writeGrid(OutputStream out) throws IOException {
+		byte[] text = textBuffer();
+		out.write(text, 0, formatGrid(text));
+	} // end of writeGrid()
+
+	// writes the grid in the format read by initGrid(), the filled cells being
+	// the givens.
+	public void outputPuzzle(String filename) throws FileNotFoundException, IOException {
 		StringBuilder sb = new StringBuilder();
+		appendHeader(sb);
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				if (grid[row][col] != 0)
+					sb.append(row).append(',').append(col).append(' ').append(grid[row][col]).append('\n');
+			}
+		}
+
+		try (FileOutputStream out = new FileOutputStream(filename)) {
+			out.write(sb.toString().getBytes(StandardCharsets.US_ASCII));
+		}
+	} // end of outputPuzzle()
+
+	// size and valid numbers lines of a puzzle file.
+	protected void appendHeader(StringBuilder sb) {
+		sb.append(size).append('\n');
+		for (int i = 0; i < validNumbers.length; i++) {
+			if (i > 0)
+				sb.append(' ');
+			sb.append(validNumbers[i]);
+		}
+		sb.append('\n');
+	}
 
+	@Override
+	public String toString() {
 		// null check
 		if (grid == null) {
 			return "";
 		}
 
-		try {
-			// length of grid
-			int gridLen = grid.length;
+		byte[] text = textBuffer();
+		return new String(text, 0, formatGrid(text), StandardCharsets.US_ASCII);
+	} // end of toString()
 
-			// looping in the grid to get the values of each row.
-			for (int i = 0; i < gridLen; i++) {
-				for (int j = 0; j < gridLen; j++) {
-					// doesn't append comma to last item in the row.
-					if (j == gridLen - 1)
-						sb.append(grid[i][j]);
-					else
-						sb.append(grid[i][j] + ",");
-				}
-				// add line break.
-				sb.append('\n');
+	// the thread's text buffer, large enough for any grid of this size.
+	private byte[] textBuffer() {
+		// at most 11 characters per number and a separator after it.
+		int capacity = grid == null ? 0 : grid.length * grid.length * 12;
+		byte[] text = textBuffers.get();
+		if (text.length < capacity) {
+			text = new byte[capacity];
+			textBuffers.set(text);
+		}
+		return text;
+	}
+
+	// writes the rows of the grid as comma separated numbers, one row per line,
+	// and returns the number of bytes written.
+	private int formatGrid(byte[] text) {
+		if (grid == null)
+			return 0;
+
+		int gridLen = grid.length;
+		int length = 0;
+		for (int i = 0; i < gridLen; i++) {
+			for (int j = 0; j < gridLen; j++) {
+				length = appendInt(text, length, grid[i][j]);
+				// doesn't append comma to last item in the row.
+				text[length++] = j == gridLen - 1 ? (byte) '\n' : (byte) ',';
 			}
-		} catch (Exception e) {
-			return "";
 		}
+		return length;
+	}
 
-		// return the string representation of the grid
-		return sb.toString();
-	} // end of toString()
+	// writes the decimal digits of value at position, returns the position
+	// after them.
+	private static int appendInt(byte[] text, int position, int value) {
+		long remaining = value;
+		if (remaining < 0) {
+			text[position++] = '-';
+			remaining = -remaining;
+		}
+		// small numbers are by far the most common.
+		if (remaining < 10) {
+			text[position++] = (byte) ('0' + remaining);
+			return position;
+		}
+
+		int end = position;
+		for (long r = remaining; r > 0; r /= 10) {
+			end++;
+		}
+		for (int i = end - 1; i >= position; i--) {
+			text[i] = (byte) ('0' + remaining % 10);
+			remaining /= 10;
+		}
+		return end;
+	}
 
 	@Override
 	public boolean validate() {
-		for (int i = 0; i < size; i++) {
-			for (int j = 0; j < size; j++) {
-				// validate each cell against its constraint.
-				if (!isOkAfterInsert(i, j, grid[i][j]))
-					return false;
-			}
-		}
-		return true;
+		return findViolation() == null;
 	} // end of validate()
 
-	// combined methods to check the constraints after inserting a value.
-	private boolean isOkAfterInsert(int row, int col, int number) {
-		if (checkNumberIsValid(number) && isInRow(row, number) == 1 && isInCol(col, number) == 1
-				&& isInBox(row, col, number) == 1) {
-			return true;
+	@Override
+	public String findViolation() {
+		// numbers seen so far in every unit. The unit masks of the grid aren't
+		// used as a solver may have written the grid directly.
+		long[] rowSeen = new long[size];
+		long[] colSeen = new long[size];
+		long[] boxSeen = new long[size];
+
+		// every unit has exactly size cells, so a unit with no repeated valid
+		// number holds all of them.
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				int number = grid[row][col];
+				int index = symbolIndex(number);
+				if (index < 0) {
+					return number == 0 ? "cell (" + row + "," + col + ") is empty"
+							: "cell (" + row + "," + col + ") holds invalid number " + number;
+				}
+
+				long bit = 1L << index;
+				int box = boxIndex(row, col);
+				if ((rowSeen[row] & bit) != 0)
+					return "row " + row + " has " + number + " twice";
+				if ((colSeen[col] & bit) != 0)
+					return "column " + col + " has " + number + " twice";
+				if ((boxSeen[box] & bit) != 0)
+					return "box " + box + " has " + number + " twice";
+
+				rowSeen[row] |= bit;
+				colSeen[col] |= bit;
+				boxSeen[box] |= bit;
+			}
 		}
-		return false;
-	}
+		return null;
+	} // end of findViolation()
 
 	// checks if the given number to insert is in the list of valid numbers.
 	public boolean checkNumberIsValid(int number) {
-
-		for (int n : validNumbers) {
-			if (n == number)
-				return true;
-		}
-		return false;
+		return symbolIndex(number) >= 0;
 	}
 
 	// check if the number is in that row
 	public int isInRow(int row, int number) {
-		int count = 0;
-		for (int i = 0; i < size; i++) {
-			if (grid[row][i] == number)
-				count++;
-		}
-		return count;
+		return isInMask(rowMask[row], number);
 	}
 
 	// check if the number is in that column.
 	public int isInCol(int col, int number) {
-		int count = 0;
-		for (int i = 0; i < size; i++) {
-			if (grid[i][col] == number)
-				count++;
-		}
-		return count;
+		return isInMask(colMask[col], number);
 	}
 
 	// check if the possible number is in the box.
 	public int isInBox(int row, int col, int number) {
-		int boxSize = (int) Math.sqrt(size);
-		int r = row - row % boxSize;
-		int c = col - col % boxSize;
-
-		int count = 0;
-
-		for (int i = r; i < r + boxSize; i++) {
-
-			for (int j = c; j < c + boxSize; j++) {
-				if (grid[i][j] == number)
-					count++;
-			}
+		return isInMask(boxMask[boxIndex(row, col)], number);
+	}
 
-		}
-		return count;
+	// returns 1 if the number's bit is set in the mask, otherwise 0.
+	private int isInMask(long mask, int number) {
+		int index = symbolIndex(number);
+		if (index < 0)
+			return 0;
+		return (int) ((mask >>> index) & 1L);
 	}
 
 } // end of class StdSudokuGrid
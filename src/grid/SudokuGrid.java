@@ -30,6 +30,21 @@ public abstract class SudokuGrid
         throws FileNotFoundException, IOException;
 
 
+    /**
+     * Constructs an initial grid like initGrid(String), from the contents of
+     * a file already in memory.  Lets puzzles come from other sources than
+     * files.
+     *
+     * @param name Name of the source, used in error messages.
+     * @param data Contents of the file.
+     * @param length Number of bytes of data to read.
+     *
+     * @throws IOException If the contents are malformed.
+     */
+    public abstract void initGrid(String name, byte[] data, int length)
+        throws IOException;
+
+
     /**
      * Write out the current values in the grid to file.  This must be implemented
      * in order for your assignment to be evaluated by our testing.
@@ -44,6 +59,18 @@ public abstract class SudokuGrid
         throws FileNotFoundException, IOException;
 
 
+    /**
+     * Writes the current values in the grid to an open stream, in the same
+     * format as outputGrid().  Lets many grids be written to one output.
+     *
+     * @param out Stream to write to.  It is neither flushed nor closed.
+     *
+     * @throws IOException If writing to the stream fails.
+     */
+    public abstract void writeGrid(OutputStream out)
+        throws IOException;
+
+
     /**
      * Converts grid to a String representation.  Useful for displaying to
      * output streams.
@@ -62,4 +89,24 @@ public abstract class SudokuGrid
      */
     public abstract boolean validate();
 
+
+    /**
+     * Checks the grid like validate(), but describes what is wrong with it.
+     * Useful to report why a solution was rejected.
+     *
+     * @return Description of the first violated constraint found, or null if
+     *                  the grid satisfies all constraints.
+     */
+    public abstract String findViolation();
+
+
+    /**
+     * Creates an independent copy of the grid, so that several solvers can work
+     * on the same puzzle at once.  Values and solver bookkeeping are copied,
+     * data that never changes after loading may be shared.
+     *
+     * @return Copy of this grid.
+     */
+    public abstract SudokuGrid copy();
+
 } // end of abstract class SudokuGrid
@@ -0,0 +1,467 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import grid.CompactPuzzleReader;
+import grid.CompactPuzzleWriter;
+import grid.KillerSudokuGrid;
+import grid.StdSudokuGrid;
+import solver.PortfolioSolver;
+import solver.SearchLimit;
+import solver.SolveResult;
+import solver.SolverStats;
+import solver.SudokuSolver;
+
+/**
+ * Solves puzzles sent over HTTP, so a solve doesn't pay for a JVM launch.
+ *
+ * POST /solve takes one puzzle, either a file in the format read by initGrid()
+ * or a single line in the format of CompactPuzzleReader, and answers with the
+ * solution in the same format. An optional "timeout" query parameter, in
+ * milliseconds, shortens the deadline of the request. The status gives the
+ * outcome: 200 solved, 422 no solution, 504 deadline reached, 503 too busy,
+ * 413 request too large and 400 malformed puzzle. GET /metrics reports the
+ * counters of the server in the Prometheus text format.
+ *
+ * Requests run on virtual threads when the JVM has them, otherwise on a fixed
+ * pool of threads. At most maxConcurrent puzzles are solved at once, each by a
+ * solver taken from a pool created at start, so solvers and their caches stay
+ * warm between requests. A request waits for a solver until its deadline.
+ */
+public class SolveServer {
+	// upper bounds of the latency buckets of /metrics, in nanoseconds.
+	private static final long[] LATENCY_BUCKETS = { 500_000L, 1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L,
+			25_000_000L, 50_000_000L, 100_000_000L, 250_000_000L, 500_000_000L, 1_000_000_000L, 2_500_000_000L,
+			5_000_000_000L, 10_000_000_000L };
+
+	// outcome of a request, counted by /metrics.
+	private enum Outcome {
+		SOLVED, UNSOLVABLE, ABORTED, INVALID, BUSY, TOO_LARGE, BAD_REQUEST, FAILED
+	}
+
+	private final String gameType;
+	private final Supplier<SudokuSolver> solverFactory;
+
+	private int maxConcurrent = Runtime.getRuntime().availableProcessors();
+	private int maxRequestBytes = 1 << 20;
+	// deadline of a request, which can only shorten it.
+	private long timeoutMillis = 10_000;
+
+	private HttpServer httpServer;
+	private ExecutorService executor;
+	private boolean virtualThreads;
+	// one permit per solver of the pool.
+	private Semaphore slots;
+	private SudokuSolver[] solvers;
+	private final ConcurrentLinkedQueue<SudokuSolver> idle = new ConcurrentLinkedQueue<SudokuSolver>();
+
+	private final AtomicLongArray outcomes = new AtomicLongArray(Outcome.values().length);
+	// requests per latency bucket, the last one for longer requests.
+	private final AtomicLongArray latencyCounts = new AtomicLongArray(LATENCY_BUCKETS.length + 1);
+	private final AtomicLong latencyTotal = new AtomicLong();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	// search statistics summed over every solve.
+	private final SolverStats totals = new SolverStats();
+
+	/**
+	 * @param gameType      Type of game, sudoku or killer, of every puzzle.
+	 * @param solverFactory Creates the solvers of the pool.
+	 */
+	public SolveServer(String gameType, Supplier<SudokuSolver> solverFactory) {
+		this.gameType = gameType;
+		this.solverFactory = solverFactory;
+	} // end of SolveServer()
+
+	public void setMaxConcurrent(int maxConcurrent) {
+		this.maxConcurrent = Math.max(1, maxConcurrent);
+	}
+
+	public void setMaxRequestBytes(int maxRequestBytes) {
+		this.maxRequestBytes = Math.max(1, maxRequestBytes);
+	}
+
+	public void setTimeoutMillis(long timeoutMillis) {
+		this.timeoutMillis = Math.max(1, timeoutMillis);
+	}
+
+	/**
+	 * Creates the solvers and starts serving.
+	 *
+	 * @param address Address to listen on, port 0 for any free port.
+	 */
+	public synchronized void start(InetSocketAddress address) throws IOException {
+		if (httpServer != null)
+			throw new IllegalStateException("server already started");
+
+		solvers = new SudokuSolver[maxConcurrent];
+		for (int i = 0; i < maxConcurrent; i++) {
+			solvers[i] = solverFactory.get();
+			idle.add(solvers[i]);
+		}
+		slots = new Semaphore(maxConcurrent, true);
+
+		// without TCP_NODELAY, small responses wait for delayed ACKs, about 40
+		// ms a request. Read once, by the first server created.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+
+		executor = newExecutor();
+		httpServer = HttpServer.create(address, 0);
+		httpServer.createContext("/solve", this::handleSolve);
+		httpServer.createContext("/metrics", this::handleMetrics);
+		httpServer.setExecutor(executor);
+		httpServer.start();
+	} // end of start()
+
+	// virtual threads by reflection, as the code is built for older JVMs too.
+	private ExecutorService newExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			virtualThreads = true;
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			// twice the solvers, so requests are read and answered while the
+			// solvers are busy
+			virtualThreads = false;
+			return Executors.newFixedThreadPool(maxConcurrent * 2);
+		}
+	}
+
+	// stops serving, waiting at most delaySeconds for the requests in progress.
+	public synchronized void stop(int delaySeconds) {
+		if (httpServer == null)
+			return;
+
+		httpServer.stop(delaySeconds);
+		executor.shutdown();
+		for (SudokuSolver solver : solvers) {
+			if (solver instanceof PortfolioSolver)
+				((PortfolioSolver) solver).shutdown();
+		}
+		httpServer = null;
+	}
+
+	public synchronized InetSocketAddress getAddress() {
+		return httpServer != null ? httpServer.getAddress() : null;
+	}
+
+	public boolean usesVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/* ********************************************************* */
+
+	private void handleSolve(HttpExchange exchange) throws IOException {
+		long startTime = System.nanoTime();
+		inFlight.incrementAndGet();
+		Outcome outcome = Outcome.FAILED;
+		try {
+			outcome = solve(exchange, startTime);
+		} catch (RuntimeException | StackOverflowError e) {
+			// malformed puzzles are answered with 400 before solving, so this
+			// is a fault of the solver, as is a search recursing too deep
+			respond(exchange, 500, "solver failed, " + e + "\n");
+		} finally {
+			exchange.close();
+			inFlight.decrementAndGet();
+			record(outcome, System.nanoTime() - startTime);
+		}
+	} // end of handleSolve()
+
+	private Outcome solve(HttpExchange exchange, long startTime) throws IOException {
+		if (!exchange.getRequestMethod().equals("POST")) {
+			exchange.getResponseHeaders().set("Allow", "POST");
+			respond(exchange, 405, "use POST\n");
+			return Outcome.BAD_REQUEST;
+		}
+
+		long timeoutNanos;
+		try {
+			timeoutNanos = TimeUnit.MILLISECONDS.toNanos(requestTimeout(exchange.getRequestURI().getRawQuery()));
+		} catch (NumberFormatException e) {
+			respond(exchange, 400, "invalid timeout\n");
+			return Outcome.BAD_REQUEST;
+		}
+		// the deadline counts from the arrival of the request, waiting for a
+		// solver included
+		SearchLimit limit = new SearchLimit(startTime + timeoutNanos, SearchLimit.NONE);
+
+		ByteBuffer body = readBody(exchange);
+		if (body == null) {
+			respond(exchange, 413, "puzzle larger than " + maxRequestBytes + " bytes\n");
+			return Outcome.TOO_LARGE;
+		}
+
+		// parsed before taking a solver, so malformed puzzles never wait
+		boolean compact = isCompact(body);
+		StdSudokuGrid grid;
+		try {
+			grid = compact ? readCompact(body) : readGridFile(body);
+		} catch (IOException e) {
+			respond(exchange, 400, e.getMessage() + "\n");
+			return Outcome.BAD_REQUEST;
+		}
+
+		SolveResult result;
+		try {
+			if (!slots.tryAcquire(startTime + timeoutNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+				respond(exchange, 503, "no solver free before the deadline\n");
+				return Outcome.BUSY;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			respond(exchange, 503, "interrupted\n");
+			return Outcome.BUSY;
+		}
+		try {
+			SudokuSolver solver = idle.poll();
+			if (solver == null)
+				solver = solverFactory.get();
+			try {
+				result = solver.solve(grid, limit);
+				totals.add(solver.getStats());
+			} finally {
+				idle.add(solver);
+			}
+		} finally {
+			slots.release();
+		}
+
+		if (result == SolveResult.UNSOLVABLE) {
+			respond(exchange, 422, "no solution\n");
+			return Outcome.UNSOLVABLE;
+		}
+		if (result == SolveResult.ABORTED) {
+			respond(exchange, 504, "deadline reached\n");
+			return Outcome.ABORTED;
+		}
+
+		String violation = grid.findViolation();
+		if (violation != null) {
+			respond(exchange, 500, "invalid solution, " + violation + "\n");
+			return Outcome.INVALID;
+		}
+
+		// the solution in the format of the puzzle
+		ByteArrayOutputStream out = new ByteArrayOutputStream(grid.size * grid.size * 3);
+		if (compact) {
+			try (CompactPuzzleWriter writer = new CompactPuzzleWriter(out)) {
+				writer.write(grid);
+			}
+		} else {
+			grid.writeGrid(out);
+		}
+		respond(exchange, 200, out.toByteArray());
+		return Outcome.SOLVED;
+	} // end of solve()
+
+	// deadline of a request in milliseconds, shortened by a "timeout" query
+	// parameter.
+	private long requestTimeout(String query) {
+		if (query == null)
+			return timeoutMillis;
+
+		for (String parameter : query.split("&")) {
+			if (parameter.startsWith("timeout=")) {
+				long requested = Long.parseLong(parameter.substring("timeout=".length()));
+				if (requested < 0)
+					throw new NumberFormatException("negative timeout");
+				return Math.min(requested, timeoutMillis);
+			}
+		}
+		return timeoutMillis;
+	}
+
+	// reads the request body, null if it is larger than maxRequestBytes.
+	private ByteBuffer readBody(HttpExchange exchange) throws IOException {
+		long declared = -1;
+		String contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+		if (contentLength != null) {
+			try {
+				declared = Long.parseLong(contentLength.trim());
+			} catch (NumberFormatException e) {
+				declared = -1;
+			}
+		}
+		if (declared > maxRequestBytes)
+			return null;
+
+		byte[] data = new byte[declared >= 0 ? (int) declared : Math.min(maxRequestBytes, 4096)];
+		int length = 0;
+		try (InputStream in = exchange.getRequestBody()) {
+			while (true) {
+				if (length == data.length) {
+					// one byte over the limit is enough to reject the request
+					if (length > maxRequestBytes)
+						return null;
+					data = Arrays.copyOf(data, Math.min(maxRequestBytes + 1, Math.max(16, length * 2)));
+				}
+				int read = in.read(data, length, data.length - length);
+				if (read < 0)
+					break;
+				length += read;
+			}
+		}
+		return length > maxRequestBytes ? null : ByteBuffer.wrap(data, 0, length);
+	}
+
+	// a body of one line is in the compact format, a grid file always has at
+	// least the size and the valid numbers lines.
+	private static boolean isCompact(ByteBuffer body) {
+		int lines = 0;
+		boolean blank = true;
+		for (int i = body.position(); i < body.limit(); i++) {
+			byte b = body.get(i);
+			if (b == '\n') {
+				if (!blank)
+					lines++;
+				blank = true;
+			} else if (b != ' ' && b != '\t' && b != '\r') {
+				blank = false;
+			}
+		}
+		if (!blank)
+			lines++;
+		return lines <= 1;
+	}
+
+	private StdSudokuGrid readCompact(ByteBuffer body) throws IOException {
+		try (CompactPuzzleReader reader = new CompactPuzzleReader(body)) {
+			StdSudokuGrid grid = reader.next();
+			if (grid == null)
+				throw new IOException("no puzzle in the request");
+			if ((grid instanceof KillerSudokuGrid) != gameType.equals("killer"))
+				throw new IOException("not a " + gameType + " puzzle");
+			return grid;
+		}
+	}
+
+	private StdSudokuGrid readGridFile(ByteBuffer body) throws IOException {
+		StdSudokuGrid grid = gameType.equals("killer") ? new KillerSudokuGrid() : new StdSudokuGrid();
+		grid.initGrid("request", body.array(), body.limit());
+		return grid;
+	}
+
+	private static void respond(HttpExchange exchange, int status, String message) throws IOException {
+		respond(exchange, status, message.getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=us-ascii");
+		exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	private void record(Outcome outcome, long nanos) {
+		outcomes.incrementAndGet(outcome.ordinal());
+		int bucket = 0;
+		while (bucket < LATENCY_BUCKETS.length && nanos > LATENCY_BUCKETS[bucket]) {
+			bucket++;
+		}
+		latencyCounts.incrementAndGet(bucket);
+		latencyTotal.addAndGet(nanos);
+	}
+
+	/* ********************************************************* */
+
+	private void handleMetrics(HttpExchange exchange) throws IOException {
+		try {
+			if (!exchange.getRequestMethod().equals("GET")) {
+				exchange.getResponseHeaders().set("Allow", "GET");
+				respond(exchange, 405, "use GET\n");
+				return;
+			}
+			respond(exchange, 200, metrics().getBytes(StandardCharsets.US_ASCII));
+		} finally {
+			exchange.close();
+		}
+	} // end of handleMetrics()
+
+	// counters of the server in the Prometheus text format.
+	private String metrics() {
+		StringBuilder sb = new StringBuilder();
+
+		sb.append("# TYPE sudoku_requests_total counter\n");
+		for (Outcome outcome : Outcome.values()) {
+			sb.append("sudoku_requests_total{outcome=\"").append(outcome.name().toLowerCase()).append("\"} ")
+					.append(outcomes.get(outcome.ordinal())).append('\n');
+		}
+
+		sb.append("# TYPE sudoku_requests_in_flight gauge\n");
+		sb.append("sudoku_requests_in_flight ").append(inFlight.get()).append('\n');
+		sb.append("# TYPE sudoku_solvers_busy gauge\n");
+		sb.append("sudoku_solvers_busy ").append(maxConcurrent - slots.availablePermits()).append('\n');
+		sb.append("# TYPE sudoku_solvers gauge\n");
+		sb.append("sudoku_solvers ").append(maxConcurrent).append('\n');
+		sb.append("# TYPE sudoku_virtual_threads gauge\n");
+		sb.append("sudoku_virtual_threads ").append(virtualThreads ? 1 : 0).append('\n');
+
+		sb.append("# TYPE sudoku_request_seconds histogram\n");
+		long count = 0;
+		for (int i = 0; i <= LATENCY_BUCKETS.length; i++) {
+			count += latencyCounts.get(i);
+			String bound = i < LATENCY_BUCKETS.length ? Double.toString(LATENCY_BUCKETS[i] / 1e9) : "+Inf";
+			sb.append("sudoku_request_seconds_bucket{le=\"").append(bound).append("\"} ").append(count).append('\n');
+		}
+		sb.append("sudoku_request_seconds_sum ").append(latencyTotal.get() / 1e9).append('\n');
+		sb.append("sudoku_request_seconds_count ").append(count).append('\n');
+
+		synchronized (totals) {
+			sb.append("# TYPE sudoku_search_nodes_total counter\n");
+			sb.append("sudoku_search_nodes_total ").append(totals.nodes).append('\n');
+			sb.append("# TYPE sudoku_search_backtracks_total counter\n");
+			sb.append("sudoku_search_backtracks_total ").append(totals.backtracks).append('\n');
+		}
+
+		// wins of every member, summed over the portfolio solvers of the pool
+		long[] wins = null;
+		String[] names = null;
+		for (SudokuSolver solver : solvers) {
+			if (!(solver instanceof PortfolioSolver))
+				continue;
+			PortfolioSolver portfolio = (PortfolioSolver) solver;
+			long[] solverWins = portfolio.getWins();
+			if (wins == null) {
+				names = portfolio.getMemberNames();
+				wins = new long[solverWins.length];
+			}
+			for (int i = 0; i < wins.length; i++) {
+				wins[i] += solverWins[i];
+			}
+		}
+		if (wins != null) {
+			sb.append("# TYPE sudoku_portfolio_wins_total counter\n");
+			for (int i = 0; i < wins.length; i++) {
+				sb.append("sudoku_portfolio_wins_total{solver=\"").append(names[i]).append("\"} ").append(wins[i])
+						.append('\n');
+			}
+		}
+		return sb.toString();
+	} // end of metrics()
+} // end of class SolveServer
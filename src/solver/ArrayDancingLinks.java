@@ -0,0 +1,294 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Dancing links kept in parallel int arrays instead of one object per node.
+ * Node 0 is the root header, nodes 1..columns are the column headers and the
+ * remaining nodes are the ones of the cover matrix. Every node stores the id of
+ * its column node and of the cover matrix row it belongs to, so a solution is
+ * read back without any string parsing.
+ *
+ * As the links are plain arrays, a structure can be copied cheaply. A solver
+ * can link the cover matrix of an empty grid once, keep it as a template and
+ * give every puzzle its own copy, with the rows of the givens chosen up front.
+ */
+public class ArrayDancingLinks {
+	private static final int ROOT = 0;
+
+	// links of every node
+	private int[] left, right, up, down;
+	// column node of every node
+	private int[] column;
+	// cover matrix row of every node, -1 for header nodes
+	private int[] rowId;
+	// first node of every cover matrix row, 0 if the row was never added
+	private int[] rowNode = new int[0];
+	// number of rows still linked in each column, indexed by column node
+	private final int[] size;
+
+	private final int columns;
+	private int noOfNodes;
+
+	// row nodes chosen on the current search path, starting with the rows
+	// chosen before the search
+	private final int[] answer;
+	private int chosenRows = 0;
+	// cover matrix rows of the first solution found
+	private final int[] solution;
+	private int solutionSize;
+	private int solutions;
+	private int solutionLimit;
+	// limit of the searches, null if they have none
+	private SearchLimit limit;
+
+	// work done by the last search
+	private final SolverStats stats = new SolverStats();
+
+	public ArrayDancingLinks(int columns, int expectedNodes) {
+		this.columns = columns;
+		int capacity = Math.max(columns + 1 + expectedNodes, 16);
+		left = new int[capacity];
+		right = new int[capacity];
+		up = new int[capacity];
+		down = new int[capacity];
+		column = new int[capacity];
+		rowId = new int[capacity];
+		size = new int[columns + 1];
+		answer = new int[columns];
+		solution = new int[columns];
+
+		// root and column headers linked in a circular list
+		for (int i = 0; i <= columns; i++) {
+			left[i] = i == 0 ? columns : i - 1;
+			right[i] = i == columns ? 0 : i + 1;
+			up[i] = i;
+			down[i] = i;
+			column[i] = i;
+			rowId[i] = -1;
+		}
+		noOfNodes = columns + 1;
+	}
+
+	// copies the links of another structure, so they can be searched without
+	// changing the other one
+	public ArrayDancingLinks(ArrayDancingLinks other) {
+		columns = other.columns;
+		noOfNodes = other.noOfNodes;
+		left = Arrays.copyOf(other.left, noOfNodes);
+		right = Arrays.copyOf(other.right, noOfNodes);
+		up = Arrays.copyOf(other.up, noOfNodes);
+		down = Arrays.copyOf(other.down, noOfNodes);
+		column = Arrays.copyOf(other.column, noOfNodes);
+		rowId = Arrays.copyOf(other.rowId, noOfNodes);
+		// never changed once the rows are added
+		rowNode = other.rowNode;
+		size = other.size.clone();
+		answer = other.answer.clone();
+		solution = new int[columns];
+		chosenRows = other.chosenRows;
+	}
+
+	// links one row of the cover matrix, given by the columns of its ones
+	public void addRow(int row, int[] rowColumns) {
+		ensureCapacity(noOfNodes + rowColumns.length);
+
+		int first = noOfNodes;
+		if (row >= rowNode.length)
+			rowNode = Arrays.copyOf(rowNode, Math.max(row + 1, rowNode.length * 2));
+		rowNode[row] = first;
+
+		for (int j = 0; j < rowColumns.length; j++) {
+			int node = noOfNodes++;
+			int col = rowColumns[j] + 1;
+
+			// hook below the last node of the column
+			column[node] = col;
+			rowId[node] = row;
+			up[node] = up[col];
+			down[node] = col;
+			down[up[col]] = node;
+			up[col] = node;
+			size[col]++;
+
+			// hook to the right of the previous node of the row
+			left[node] = j == 0 ? node : node - 1;
+			right[node] = first;
+			right[left[node]] = node;
+			left[first] = node;
+		}
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity <= left.length)
+			return;
+
+		int newCapacity = Math.max(capacity, left.length * 2);
+		left = Arrays.copyOf(left, newCapacity);
+		right = Arrays.copyOf(right, newCapacity);
+		up = Arrays.copyOf(up, newCapacity);
+		down = Arrays.copyOf(down, newCapacity);
+		column = Arrays.copyOf(column, newCapacity);
+		rowId = Arrays.copyOf(rowId, newCapacity);
+	}
+
+	// puts the row in every solution, as for the given of a puzzle. Returns
+	// false if the row is unknown or clashes with a row already chosen.
+	public boolean chooseRow(int row) {
+		if (row < 0 || row >= rowNode.length || rowNode[row] == 0)
+			return false;
+
+		// every node must still be linked in a column that is still open
+		int first = rowNode[row];
+		int j = first;
+		do {
+			int c = column[j];
+			if (right[left[c]] != c || down[up[j]] != j)
+				return false;
+			j = right[j];
+		} while (j != first);
+
+		j = first;
+		do {
+			cover(column[j]);
+			j = right[j];
+		} while (j != first);
+
+		answer[chosenRows++] = first;
+		return true;
+	}
+
+	// searches for an exact cover, returns true once one is found
+	public boolean search() {
+		return search(1) > 0;
+	}
+
+	// searches until solutionLimit exact covers are found, returns how many
+	// were found. Only the first one is kept.
+	public int search(int solutionLimit) {
+		this.solutionLimit = Math.max(1, solutionLimit);
+		solutions = 0;
+		solutionSize = 0;
+		stats.reset();
+		searchLevel(chosenRows);
+		return solutions;
+	}
+
+	// returns true once the solution limit is reached, the links are then left
+	// as they are and the search unwinds straight away.
+	private boolean searchLevel(int k) {
+		stats.visit(k);
+		if (limit != null && limit.reached())
+			return true;
+
+		// all the columns removed
+		if (right[ROOT] == ROOT) {
+			stats.solutions++;
+			if (solutions == 0) {
+				for (int i = 0; i < k; i++) {
+					solution[i] = rowId[answer[i]];
+				}
+				solutionSize = k;
+			}
+			solutions++;
+			return solutions >= solutionLimit;
+		}
+
+		int c = selectColumn();
+		if (size[c] == 0)
+			return false;
+
+		cover(c);
+		for (int r = down[c]; r != c; r = down[r]) {
+			answer[k] = r;
+
+			for (int j = right[r]; j != r; j = right[j]) {
+				cover(column[j]);
+			}
+
+			if (searchLevel(k + 1))
+				return true;
+
+			for (int j = left[r]; j != r; j = left[j]) {
+				uncover(column[j]);
+			}
+			stats.backtracks++;
+		}
+		uncover(c);
+		return false;
+	}
+
+	// column with the fewest rows left
+	private int selectColumn() {
+		int min = Integer.MAX_VALUE;
+		int best = ROOT;
+		for (int c = right[ROOT]; c != ROOT; c = right[c]) {
+			if (size[c] < min) {
+				min = size[c];
+				best = c;
+				if (min <= 1)
+					break;
+			}
+		}
+		return best;
+	}
+
+	private void cover(int c) {
+		right[left[c]] = right[c];
+		left[right[c]] = left[c];
+		int updates = 1;
+		for (int i = down[c]; i != c; i = down[i]) {
+			for (int j = right[i]; j != i; j = right[j]) {
+				up[down[j]] = up[j];
+				down[up[j]] = down[j];
+				size[column[j]]--;
+				updates++;
+			}
+		}
+		stats.linkUpdates += updates;
+	}
+
+	private void uncover(int c) {
+		int updates = 1;
+		for (int i = up[c]; i != c; i = up[i]) {
+			for (int j = left[i]; j != i; j = left[j]) {
+				size[column[j]]++;
+				up[down[j]] = j;
+				down[up[j]] = j;
+				updates++;
+			}
+		}
+		stats.linkUpdates += updates;
+		right[left[c]] = c;
+		left[right[c]] = c;
+	}
+
+	// later searches stop once the limit is reached, the solutions found so
+	// far are kept
+	public void setLimit(SearchLimit limit) {
+		this.limit = limit;
+	}
+
+	// number of rows in the first solution found by the last search
+	public int solutionSize() {
+		return solutionSize;
+	}
+
+	// cover matrix row of the i-th row in the first solution
+	public int solutionRow(int i) {
+		return solution[i];
+	}
+
+	public int getColumns() {
+		return columns;
+	}
+
+	// counters of the last search
+	public SolverStats getStats() {
+		return stats;
+	}
+} // end of class ArrayDancingLinks
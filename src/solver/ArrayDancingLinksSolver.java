@@ -0,0 +1,100 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package solver;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import grid.StdSudokuGrid;
+import grid.SudokuGrid;
+
+/**
+ * Dancing links solver for standard Sudoku built on the array backed links of
+ * ArrayDancingLinks. The search does no boxing, allocation or string parsing.
+ *
+ * The links of an empty grid only depend on the grid size, as cover matrix
+ * rows are numbered by value index and the values are only looked up when the
+ * solution is read back. They are built once per size and kept as a template;
+ * every solve copies the template and chooses the rows of the givens.
+ */
+public class ArrayDancingLinksSolver extends StdSudokuSolver {
+
+	// links of the empty grid of every size solved so far, never searched.
+	private static final ConcurrentHashMap<Integer, ArrayDancingLinks> templates = new ConcurrentHashMap<Integer, ArrayDancingLinks>();
+
+	// search stops once this many solutions are found. 1 for a normal solve,
+	// 2 to check whether the solution is unique.
+	private int solutionLimit = 1;
+	// solutions found by the last solve, at most solutionLimit.
+	private int solutionCount = 0;
+
+	public ArrayDancingLinksSolver() {
+	} // end of ArrayDancingLinksSolver()
+
+	public void setSolutionLimit(int solutionLimit) {
+		this.solutionLimit = Math.max(1, solutionLimit);
+	}
+
+	public int getSolutionCount() {
+		return solutionCount;
+	}
+
+
+	@Override
+	public boolean solve(SudokuGrid grid) {
+		StdSudokuGrid stdgrid = (StdSudokuGrid) grid;
+		int size = stdgrid.size;
+
+		ArrayDancingLinks dlx = new ArrayDancingLinks(template(stdgrid));
+		stats.reset();
+		// used by indexInCoverMatrix
+		SIZE = size;
+
+		// the givens are part of every solution
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				if (stdgrid.grid[row][col] == EMPTY_CELL)
+					continue;
+
+				int index = stdgrid.symbolIndex(stdgrid.grid[row][col]);
+				if (index < 0 || !dlx.chooseRow(indexInCoverMatrix(row, col, index))) {
+					solutionCount = 0;
+					return false;
+				}
+			}
+		}
+
+		dlx.setLimit(limit);
+		solutionCount = dlx.search(solutionLimit);
+		stats.add(dlx.getStats());
+		if (solutionCount == 0)
+			return false;
+
+		// each chosen row places one value in one cell, givens included
+		for (int i = 0; i < dlx.solutionSize(); i++) {
+			int row = dlx.solutionRow(i);
+			int cell = row / size;
+			stdgrid.grid[cell / size][cell % size] = stdgrid.validNumbers[row % size];
+		}
+		stdgrid.rebuildMasks();
+		return true;
+	} // end of solve()
+
+	// the template for the size of the grid, linked on first use
+	private ArrayDancingLinks template(StdSudokuGrid stdgrid) {
+		int size = stdgrid.size;
+		ArrayDancingLinks template = templates.get(size);
+		if (template == null) {
+			// every row of the cover matrix has one node per constraint
+			template = new ArrayDancingLinks(size * size * CONSTRAINTS, size * size * size * CONSTRAINTS);
+			buildEmptyCover(stdgrid, template::addRow);
+
+			ArrayDancingLinks existing = templates.putIfAbsent(size, template);
+			if (existing != null)
+				template = existing;
+		}
+		return template;
+	}
+
+} // end of class ArrayDancingLinksSolver
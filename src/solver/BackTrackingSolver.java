@@ -14,14 +14,120 @@ public class BackTrackingSolver extends StdSudokuSolver {
 
 	private final int EMPTY = 0;
 
+	// branch on the empty cell with the fewest candidates instead of the first
+	// empty cell in row-major order.
+	private final boolean minRemainingValues;
+
+	// empty cells (row * size + col) still to fill. Cells before the current
+	// depth are already filled, the rest are waiting to be picked.
+	private int[] emptyCells;
+	private int emptyCount;
+
 	public BackTrackingSolver() {
+		this(false);
+	} // end of BackTrackingSolver()
 
+	public BackTrackingSolver(boolean minRemainingValues) {
+		this.minRemainingValues = minRemainingValues;
 	} // end of BackTrackingSolver()
 
 	@Override
 	public boolean solve(SudokuGrid grid) {
 		StdSudokuGrid stdgrid = (StdSudokuGrid) grid;
 
+		// the unit masks have to match the grid before searching.
+		stdgrid.rebuildMasks();
+		stats.reset();
+
+		if (minRemainingValues) {
+			collectEmptyCells(stdgrid);
+			return solveMinRemaining(stdgrid, 0);
+		}
+		return solveGrid(stdgrid, 0);
+	} // end of solve()
+
+	// stores every empty cell once so the search never rescans the grid.
+	private void collectEmptyCells(StdSudokuGrid stdgrid) {
+		int size = stdgrid.size;
+		emptyCells = new int[size * size];
+		emptyCount = 0;
+
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				if (stdgrid.grid[row][col] == EMPTY)
+					emptyCells[emptyCount++] = row * size + col;
+			}
+		}
+	}
+
+	// recursively fills the empty cell with the fewest candidates.
+	private boolean solveMinRemaining(StdSudokuGrid stdgrid, int depth) {
+		stats.visit(depth);
+		// the limit of the solve was reached, give up.
+		if (limitReached())
+			return false;
+
+		// every empty cell has been filled.
+		if (depth == emptyCount) {
+			stats.solutions++;
+			return true;
+		}
+
+		int size = stdgrid.size;
+
+		// pick the remaining cell with the smallest candidate mask.
+		int best = depth;
+		long bestCandidates = 0;
+		int bestCount = Integer.MAX_VALUE;
+		for (int i = depth; i < emptyCount; i++) {
+			int cell = emptyCells[i];
+			long candidates = stdgrid.candidateMask(cell / size, cell % size);
+			stats.constraintChecks++;
+			int count = Long.bitCount(candidates);
+
+			if (count < bestCount) {
+				best = i;
+				bestCandidates = candidates;
+				bestCount = count;
+
+				// a dead end or a forced value, no need to look further.
+				if (count <= 1)
+					break;
+			}
+		}
+
+		if (bestCount == 0)
+			return false;
+
+		// move the chosen cell in front of the unfilled ones.
+		int cell = emptyCells[best];
+		emptyCells[best] = emptyCells[depth];
+		emptyCells[depth] = cell;
+
+		int row = cell / size;
+		int col = cell % size;
+		int[] validNumbers = stdgrid.validNumbers;
+
+		while (bestCandidates != 0) {
+			int index = Long.numberOfTrailingZeros(bestCandidates);
+			bestCandidates &= bestCandidates - 1;
+
+			stdgrid.setValue(row, col, validNumbers[index]);
+			if (solveMinRemaining(stdgrid, depth + 1))
+				return true;
+			stdgrid.clearValue(row, col);
+			stats.backtracks++;
+		}
+		return false;
+	} // end of solveMinRemaining()
+
+	// recursively fills the first empty cell with each of its candidates.
+	private boolean solveGrid(StdSudokuGrid stdgrid, int depth) {
+		stats.visit(depth);
+		// the limit of the solve was reached, give up.
+		if (limitReached())
+			return false;
+
 		int size = stdgrid.size;
 		int[] validNumbers = stdgrid.validNumbers;
 		int[][] board = stdgrid.grid;
@@ -33,30 +139,33 @@ public class BackTrackingSolver extends StdSudokuSolver {
 				// check if cell is empty.
 				if (board[row][col] == EMPTY) {
 
-					// try inserting the values from the list of valid values.
-					for (int number : validNumbers) {
+					// only the values not used in the row, column and box.
+					long candidates = stdgrid.candidateMask(row, col);
+					stats.constraintChecks++;
 
-						// check if the value satisfies all the constraints.
-						if (isOkToInsert(row, col, number, stdgrid)) {
+					while (candidates != 0) {
+						int index = Long.numberOfTrailingZeros(candidates);
+						candidates &= candidates - 1;
 
-							// insert value to the cell
-							board[row][col] = number;
+						// insert value to the cell
+						stdgrid.setValue(row, col, validNumbers[index]);
 
-							// recursive call to solve the grid
-							if (solve(grid)) {
-								return true;
-							} else {
-								board[row][col] = EMPTY;
-							}
+						// recursive call to solve the grid
+						if (solveGrid(stdgrid, depth + 1)) {
+							return true;
+						} else {
+							stdgrid.clearValue(row, col);
+							stats.backtracks++;
 						}
 					}
 					return false;
 				}
 			}
 		}
+		stats.solutions++;
 		return true;
 
-	} // end of solve()
+	} // end of solveGrid()
 
 	// combined methods to check the constarints before inserting a value
 	public boolean isOkToInsert(int row, int col, int number, StdSudokuGrid grid) {
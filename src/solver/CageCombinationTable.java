@@ -0,0 +1,357 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Table of the values that can still appear in a Killer Sudoku cage. For a cage
+ * total, cage size and the values already used in the cage, it returns the mask
+ * of values (bit i for validNumbers[i]) found in at least one combination of
+ * distinct valid numbers that adds up to the total. Tables are built lazily and
+ * shared by all puzzles that use the same valid numbers.
+ *
+ * The cages built are kept in one cache shared by every table, bounded by the
+ * memory of their tables and evicting the least recently used cage first. A
+ * cage with too many combinations to enumerate is left open: every unused value
+ * is a candidate and only the cage bounds of the solvers prune it. A cage
+ * enumerated under a search limit is given up, and not cached, once the limit
+ * is reached.
+ */
+public class CageCombinationTable {
+
+	// largest alphabet for which a dense table over every used mask is built,
+	// 512 entries per cage.
+	private static final int DENSE_LIMIT = 9;
+	// largest sparse table, in used masks. Cages with more scan their
+	// combinations on every lookup.
+	private static final int SPARSE_LIMIT = 1 << 12;
+	// most combinations kept for a cage, more leave the cage open.
+	private static final int MAX_COMBINATIONS = 1 << 14;
+	// most enumeration steps for a cage, more leave the cage open.
+	private static final long MAX_STEPS = 1L << 22;
+	// enumeration steps between two checks of the search limit.
+	private static final int LIMIT_INTERVAL = 1 << 10;
+
+	// most tables kept, a table only holds the valid numbers and their sums.
+	private static final int MAX_TABLES = 64;
+	// most longs held by the cached cages of every table, about 32 MB.
+	private static final long MAX_CACHED_WEIGHT = 1L << 22;
+
+	// tables already built, keyed by the valid numbers of the puzzle, least
+	// recently used first.
+	private static final LinkedHashMap<String, CageCombinationTable> tables = new LinkedHashMap<String, CageCombinationTable>(
+			16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, CageCombinationTable> eldest) {
+			return size() > MAX_TABLES;
+		}
+	};
+
+	// cages of every table, least recently used first, and the longs they hold.
+	private static final LinkedHashMap<CageKey, CageCandidates> cages = new LinkedHashMap<CageKey, CageCandidates>(16,
+			0.75f, true);
+	private static long cachedWeight = 0;
+
+	private final int[] validNumbers;
+	// sums[i] is the sum of the i smallest valid numbers.
+	private final long[] sums;
+
+	private CageCombinationTable(int[] validNumbers) {
+		this.validNumbers = validNumbers;
+		sums = new long[validNumbers.length + 1];
+		for (int i = 0; i < validNumbers.length; i++) {
+			sums[i + 1] = sums[i] + validNumbers[i];
+		}
+	}
+
+	// returns the shared table for the (sorted) valid numbers.
+	public static CageCombinationTable forValidNumbers(int[] validNumbers) {
+		final int[] numbers = validNumbers.clone();
+		Arrays.sort(numbers);
+
+		String key = Arrays.toString(numbers);
+		synchronized (tables) {
+			CageCombinationTable table = tables.get(key);
+			if (table == null) {
+				table = new CageCombinationTable(numbers);
+				tables.put(key, table);
+			}
+			return table;
+		}
+	}
+
+	// returns the candidates of a cage with the given total and number of cells.
+	public CageCandidates forCage(int sum, int size) {
+		return forCage(sum, size, null);
+	}
+
+	/**
+	 * Returns the candidates of a cage, enumerating its combinations under a
+	 * search limit. The enumeration counts one search node every LIMIT_INTERVAL
+	 * steps against the limit.
+	 *
+	 * @return The candidates, or null if the limit stopped the enumeration.
+	 */
+	public CageCandidates forCage(int sum, int size, SearchLimit limit) {
+		CageKey key = new CageKey(this, sum, size);
+		synchronized (cages) {
+			CageCandidates cage = cages.get(key);
+			if (cage != null)
+				return cage;
+		}
+
+		// built outside the lock, another thread may build the same cage
+		Enumeration enumeration = new Enumeration(limit);
+		long[] combinations = enumeration.combinations(sum, size);
+		if (enumeration.stopped)
+			return null;
+		CageCandidates cage = new CageCandidates(combinations, validNumbers.length);
+
+		synchronized (cages) {
+			CageCandidates existing = cages.get(key);
+			if (existing != null)
+				return existing;
+
+			cages.put(key, cage);
+			cachedWeight += cage.weight();
+			Iterator<CageCandidates> eldest = cages.values().iterator();
+			while (cachedWeight > MAX_CACHED_WEIGHT && eldest.hasNext()) {
+				CageCandidates evicted = eldest.next();
+				if (evicted == cage)
+					break;
+				cachedWeight -= evicted.weight();
+				eldest.remove();
+			}
+		}
+		return cage;
+	}
+
+	// depth first enumeration of the sets of distinct valid numbers adding up
+	// to a sum, given up once it takes too long.
+	private class Enumeration {
+		private final SearchLimit limit;
+		private final ArrayList<Long> found = new ArrayList<Long>();
+		private long steps = 0;
+		// too many combinations or steps, the cage is left open.
+		boolean open = false;
+		// the limit stopped the enumeration.
+		boolean stopped = false;
+
+		Enumeration(SearchLimit limit) {
+			this.limit = limit;
+		}
+
+		// the combinations as index masks, null if the cage is left open.
+		long[] combinations(int sum, int size) {
+			if (size < 1 || size > validNumbers.length) {
+				return new long[0];
+			}
+
+			addCombinations(0, sum, size, 0L);
+			if (open || stopped)
+				return null;
+
+			long[] result = new long[found.size()];
+			for (int i = 0; i < result.length; i++) {
+				result[i] = found.get(i);
+			}
+			return result;
+		}
+
+		// returns false once the enumeration has to stop.
+		private boolean addCombinations(int start, long remaining, int cells, long mask) {
+			if (++steps > MAX_STEPS) {
+				open = true;
+				return false;
+			}
+			if ((steps & (LIMIT_INTERVAL - 1)) == 0 && limit != null && limit.reached()) {
+				stopped = true;
+				return false;
+			}
+
+			if (cells == 0) {
+				if (remaining == 0) {
+					found.add(mask);
+					if (found.size() > MAX_COMBINATIONS) {
+						open = true;
+						return false;
+					}
+				}
+				return true;
+			}
+
+			// even the largest numbers left can't reach the sum.
+			int n = validNumbers.length;
+			if (sums[n] - sums[n - cells] < remaining)
+				return true;
+
+			for (int i = start; i <= n - cells; i++) {
+				// numbers are sorted, so from here on even the smallest ones are
+				// too large.
+				if (sums[i + cells] - sums[i] > remaining)
+					break;
+				if (!addCombinations(i + 1, remaining - validNumbers[i], cells - 1, mask | (1L << i)))
+					return false;
+			}
+			return true;
+		}
+	}
+
+	// cache key, tables are compared by identity.
+	private static final class CageKey {
+		private final CageCombinationTable table;
+		private final int sum, size;
+
+		CageKey(CageCombinationTable table, int sum, int size) {
+			this.table = table;
+			this.sum = sum;
+			this.size = size;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof CageKey))
+				return false;
+			CageKey other = (CageKey) o;
+			return table == other.table && sum == other.sum && size == other.size;
+		}
+
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(table) * 31 + sum) * 31 + size;
+		}
+	}
+
+	/**
+	 * Candidates of one (sum, size) pair. Small alphabets get a table over every
+	 * used mask so a lookup is a single array read. Larger alphabets get a hash
+	 * table over the used masks that can occur if there are few enough of them,
+	 * and otherwise scan the combinations.
+	 */
+	public static class CageCandidates {
+		// null for an open cage.
+		private final long[] combinations;
+		private final long allValues;
+
+		private final long[] dense;
+		// open addressing table from used mask to candidates, EMPTY_SLOT for
+		// an empty slot.
+		private final long[] sparseKeys;
+		private final long[] sparseValues;
+
+		private static final long EMPTY_SLOT = -1L;
+
+		CageCandidates(long[] combinations, int noOfValues) {
+			this.combinations = combinations;
+			allValues = noOfValues >= 64 ? -1L : (1L << noOfValues) - 1;
+
+			long subsets = 0;
+			if (combinations != null) {
+				for (long combination : combinations) {
+					subsets += 1L << Math.min(Long.bitCount(combination), 62);
+					if (subsets > SPARSE_LIMIT)
+						break;
+				}
+			}
+
+			if (combinations != null && noOfValues <= DENSE_LIMIT) {
+				dense = new long[1 << noOfValues];
+				sparseKeys = sparseValues = null;
+
+				// every subset of a combination can be the used mask of the cage,
+				// the rest of the combination are then its candidates.
+				for (long combination : combinations) {
+					int full = (int) combination;
+					for (int used = full;; used = (used - 1) & full) {
+						dense[used] |= full & ~used;
+						if (used == 0)
+							break;
+					}
+				}
+			} else if (combinations != null && subsets <= SPARSE_LIMIT) {
+				dense = null;
+				int capacity = Integer.highestOneBit((int) Math.max(subsets, 1) * 2) * 2;
+				sparseKeys = new long[capacity];
+				sparseValues = new long[capacity];
+				Arrays.fill(sparseKeys, EMPTY_SLOT);
+
+				for (long full : combinations) {
+					for (long used = full;; used = (used - 1) & full) {
+						int slot = slot(used);
+						sparseKeys[slot] = used;
+						sparseValues[slot] |= full & ~used;
+						if (used == 0)
+							break;
+					}
+				}
+			} else {
+				dense = sparseKeys = sparseValues = null;
+			}
+		}
+
+		// slot of the used mask in the sparse table, or of the empty slot it
+		// would go in. A used mask of every value can't be told from an empty
+		// slot, it has no candidates either way.
+		private int slot(long used) {
+			int mask = sparseKeys.length - 1;
+			int slot = (int) ((used * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+			while (sparseKeys[slot] != EMPTY_SLOT && sparseKeys[slot] != used) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		// true if the cage had too many combinations to enumerate.
+		public boolean isOpen() {
+			return combinations == null;
+		}
+
+		// number of combinations of the cage, 0 for an open cage.
+		public int combinationCount() {
+			return combinations == null ? 0 : combinations.length;
+		}
+
+		// i-th combination, as a mask of value indices.
+		public long combination(int i) {
+			return combinations[i];
+		}
+
+		// mask of the values that can still be placed in a cage using used.
+		public long candidates(long used) {
+			if (dense != null)
+				return dense[(int) used];
+			if (combinations == null)
+				return allValues & ~used;
+			if (sparseKeys != null) {
+				int slot = slot(used);
+				return sparseKeys[slot] == used ? sparseValues[slot] : 0;
+			}
+
+			long result = 0;
+			for (long combination : combinations) {
+				if ((combination & used) == used)
+					result |= combination;
+			}
+			return result & ~used;
+		}
+
+		// longs held by the cage, its weight in the cache.
+		long weight() {
+			long weight = combinations == null ? 0 : combinations.length;
+			if (dense != null)
+				weight += dense.length;
+			if (sparseKeys != null)
+				weight += sparseKeys.length * 2;
+			return weight;
+		}
+	}
+} // end of class CageCombinationTable
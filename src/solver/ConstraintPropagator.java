@@ -0,0 +1,202 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package solver;
+
+import grid.KillerSudokuGrid;
+import grid.StdSudokuGrid;
+
+/**
+ * Fills the cells forced by the current values of a grid, before any search.
+ * Naked singles (a cell with one candidate left) and hidden singles (a value
+ * with one cell left in a row, column or box) are placed repeatedly until
+ * neither rule applies. On Killer grids the candidates of a cell are also
+ * limited to the values that still complete a combination of its cage.
+ *
+ * Every value placed is forced, so a grid solvable before propagation is
+ * still solvable after it, with the same solutions.
+ */
+public class ConstraintPropagator {
+	// returned by propagate() when some cell or unit has no value left.
+	public static final int CONTRADICTION = -1;
+
+	// combination candidates of each cage, null for standard grids.
+	private CageCombinationTable.CageCandidates[] cageCandidates;
+
+	/**
+	 * Propagates the grid to a fixpoint. The grid's masks must be up to date.
+	 *
+	 * @param grid  Grid to fill, values are placed with setValue().
+	 * @param stats Counts each candidate mask evaluated as a constraint check.
+	 *
+	 * @return Number of cells filled, or CONTRADICTION if the grid has no
+	 *         solution. The grid is left partly filled on a contradiction.
+	 */
+	public int propagate(StdSudokuGrid grid, SolverStats stats) {
+		return propagate(grid, stats, null);
+	}
+
+	/**
+	 * Propagates the grid like propagate(grid, stats), enumerating the cage
+	 * combinations of a Killer grid under a search limit.
+	 *
+	 * @param limit Limit of the solve, or null. If it stops the enumeration,
+	 *              nothing is filled and 0 is returned.
+	 */
+	public int propagate(StdSudokuGrid grid, SolverStats stats, SearchLimit limit) {
+		if (!initCageCandidates(grid, limit))
+			return 0;
+
+		int filled = 0;
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+
+			int naked = nakedSingles(grid, stats);
+			if (naked == CONTRADICTION)
+				return CONTRADICTION;
+
+			int hidden = hiddenSingles(grid, stats);
+			if (hidden == CONTRADICTION)
+				return CONTRADICTION;
+
+			filled += naked + hidden;
+			changed = naked + hidden > 0;
+		}
+		return filled;
+	} // end of propagate()
+
+	// true if every cell holds a value.
+	public static boolean isComplete(StdSudokuGrid grid) {
+		for (int row = 0; row < grid.size; row++) {
+			for (int col = 0; col < grid.size; col++) {
+				if (grid.grid[row][col] == 0)
+					return false;
+			}
+		}
+		return true;
+	}
+
+	// false if the limit stopped the cage enumeration.
+	private boolean initCageCandidates(StdSudokuGrid grid, SearchLimit limit) {
+		if (!(grid instanceof KillerSudokuGrid)) {
+			cageCandidates = null;
+			return true;
+		}
+
+		KillerSudokuGrid killergrid = (KillerSudokuGrid) grid;
+		CageCombinationTable table = CageCombinationTable.forValidNumbers(killergrid.validNumbers);
+		cageCandidates = new CageCombinationTable.CageCandidates[killergrid.cagePairList.size()];
+		for (int i = 0; i < cageCandidates.length; i++) {
+			KillerSudokuGrid.CagePair cagePair = killergrid.cagePairList.get(i);
+			cageCandidates[i] = table.forCage(cagePair.total, cagePair.size, limit);
+			if (cageCandidates[i] == null)
+				return false;
+		}
+		return true;
+	}
+
+	// mask of the values the empty cell can still take.
+	private long candidates(StdSudokuGrid grid, int row, int col, SolverStats stats) {
+		stats.constraintChecks++;
+		long mask = grid.candidateMask(row, col);
+		if (cageCandidates != null) {
+			KillerSudokuGrid killergrid = (KillerSudokuGrid) grid;
+			int cage = killergrid.cageOf[row * grid.size + col];
+			mask &= cage < 0 ? 0 : KillerSudokuSolver.cageMask(cageCandidates[cage], killergrid, row, col);
+		}
+		return mask;
+	}
+
+	// places every cell with a single candidate, returns how many.
+	private int nakedSingles(StdSudokuGrid grid, SolverStats stats) {
+		int filled = 0;
+		for (int row = 0; row < grid.size; row++) {
+			for (int col = 0; col < grid.size; col++) {
+				if (grid.grid[row][col] != 0)
+					continue;
+
+				long mask = candidates(grid, row, col, stats);
+				if (mask == 0)
+					return CONTRADICTION;
+				if (Long.bitCount(mask) == 1) {
+					grid.setValue(row, col, grid.validNumbers[Long.numberOfTrailingZeros(mask)]);
+					filled++;
+				}
+			}
+		}
+		return filled;
+	}
+
+	// places every value that has one cell left in a row, column or box,
+	// returns how many.
+	private int hiddenSingles(StdSudokuGrid grid, SolverStats stats) {
+		int size = grid.size;
+		int[] rows = new int[size];
+		int[] cols = new int[size];
+		int filled = 0;
+
+		// 0 = rows, 1 = columns, 2 = boxes
+		for (int type = 0; type < 3; type++) {
+			for (int unit = 0; unit < size; unit++) {
+				unitCells(grid, type, unit, rows, cols);
+
+				// values in at least one and in at least two cells of the unit
+				long once = 0, twice = 0;
+				long placed = 0;
+				for (int i = 0; i < size; i++) {
+					int value = grid.grid[rows[i]][cols[i]];
+					if (value != 0) {
+						placed |= 1L << grid.symbolIndex(value);
+						continue;
+					}
+					long mask = candidates(grid, rows[i], cols[i], stats);
+					twice |= once & mask;
+					once |= mask;
+				}
+
+				long missing = grid.fullMask & ~placed;
+				if ((missing & ~once) != 0)
+					return CONTRADICTION;
+
+				long singles = missing & once & ~twice;
+				while (singles != 0) {
+					int index = Long.numberOfTrailingZeros(singles);
+					singles &= singles - 1;
+					long bit = 1L << index;
+
+					// the only cell of the unit that can take the value.
+					int cell = 0;
+					while (cell < size && (grid.grid[rows[cell]][cols[cell]] != 0
+							|| (candidates(grid, rows[cell], cols[cell], stats) & bit) == 0)) {
+						cell++;
+					}
+					if (cell == size)
+						return CONTRADICTION;
+
+					grid.setValue(rows[cell], cols[cell], grid.validNumbers[index]);
+					filled++;
+				}
+			}
+		}
+		return filled;
+	}
+
+	// fills rows and cols with the cells of a row, column or box.
+	private static void unitCells(StdSudokuGrid grid, int type, int unit, int[] rows, int[] cols) {
+		int boxSize = grid.boxSize;
+		for (int i = 0; i < grid.size; i++) {
+			if (type == 0) {
+				rows[i] = unit;
+				cols[i] = i;
+			} else if (type == 1) {
+				rows[i] = i;
+				cols[i] = unit;
+			} else {
+				rows[i] = (unit / boxSize) * boxSize + i / boxSize;
+				cols[i] = (unit % boxSize) * boxSize + i % boxSize;
+			}
+		}
+	}
+} // end of class ConstraintPropagator
@@ -5,6 +5,7 @@
 package solver;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -17,40 +18,110 @@ import solver.DancingLinksSolver.DancingLinkHelper.DancingNode;
  */
 public class DancingLinksSolver extends StdSudokuSolver {
 
+	// search stops once this many solutions are found. 1 for a normal solve,
+	// 2 to check whether the solution is unique.
+	private int solutionLimit = 1;
+	// solutions found by the last solve, at most solutionLimit.
+	private int solutionCount = 0;
+
+	// workers of the parallel search, 1 searches sequentially. They run on the
+	// pool shared by every solver, so more workers than cores only queue.
+	private int parallelism = 1;
+	// most levels of the search tree expanded into independent subproblems.
+	private int splitDepth = 8;
+
+	// state shared by the workers of a parallel search, null otherwise.
+	private ParallelSearch parallelSearch;
+
 	public DancingLinksSolver() {
 	} // end of DancingLinksSolver()
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public void setSplitDepth(int splitDepth) {
+		this.splitDepth = Math.max(1, splitDepth);
+	}
+
+	public void setSolutionLimit(int solutionLimit) {
+		this.solutionLimit = Math.max(1, solutionLimit);
+	}
+
+	public int getSolutionCount() {
+		return solutionCount;
+	}
+
 	@Override
 	public boolean solve(SudokuGrid grid) {
 		StdSudokuGrid stdgrid = (StdSudokuGrid) grid;
 
-		// build cover matrix out of sudoku board
-		int[][] cover = getCoverMatrix(stdgrid);
+		if (parallelism > 1)
+			return solveParallel(stdgrid);
+
+		int columns = stdgrid.size * stdgrid.size * CONSTRAINTS;
+		DancingLinkHelper dlx = new DancingLinkHelper(columns, new SudokuHandler(stdgrid));
 
-		DancingLinkHelper dlx = new DancingLinkHelper(cover, new SudokuHandler(stdgrid.size));
+		// link the sparse cover matrix of the sudoku board straight into the dlx
+		buildCover(stdgrid, dlx::addRow);
+		dlx.finishBoard();
 
 		// run a method to solve the problem
-		dlx.runSolver("std", grid);
+		solutionCount = dlx.runSolver("std", grid, solutionLimit);
+		stats.reset();
+		stats.add(dlx.searchStats);
 
-		// get the solved board.
+		// get the first solved board.
 		int[][] answer = dlx.resolvedGrid;
 
-		// if the value in board is 0 that means it might be empty.
-		if (answer == null || answer[0][0] == 0)
+		if (solutionCount == 0 || answer == null)
 			return false;
 
 		stdgrid.grid = answer;
+		stdgrid.rebuildMasks();
 		return true;
 	} // end of solve()
 
+	// solves the subproblems below the givens on the shared pool. Every
+	// worker links its own copy of the cover.
+	private boolean solveParallel(StdSudokuGrid stdgrid) {
+		// the cover is built once and linked again by every worker
+		SparseCover cover = new SparseCover();
+		buildCover(stdgrid, cover);
+		stats.reset();
+
+		parallelSearch = new ParallelSearch(solutionLimit);
+		int[][] answer = parallelSearch.run(() -> linkHelper(cover, stdgrid), givenRows(stdgrid), parallelism,
+				splitDepth);
+		solutionCount = parallelSearch.solutionCount();
+		parallelSearch = null;
+
+		if (answer == null)
+			return false;
+
+		stdgrid.grid = answer;
+		stdgrid.rebuildMasks();
+		return true;
+	} // end of solveParallel()
+
+	// links the sparse cover into a new dancing links structure
+	private DancingLinkHelper linkHelper(SparseCover cover, StdSudokuGrid stdgrid) {
+		int size = stdgrid.size;
+		DancingLinkHelper dlx = new DancingLinkHelper(size * size * CONSTRAINTS, new SudokuHandler(stdgrid));
+		cover.replay(dlx::addRow);
+		dlx.finishBoard();
+		return dlx;
+	}
+
 	// Internal class
-	class DancingLinkHelper {
+	class DancingLinkHelper implements SubproblemSearch {
 
 		static final boolean verbose = true;
 
 		class DancingNode {
 			DancingNode L, R, U, D;
 			ColumnNode C;
+			int rowIndex;
 
 			// hooks node right to current node
 			DancingNode hookRight(DancingNode n1) {
@@ -74,23 +145,23 @@ public class DancingLinksSolver extends StdSudokuSolver {
 			void unlinkLR() {
 				this.L.R = this.R;
 				this.R.L = this.L;
-				updates++;
+				searchStats.linkUpdates++;
 			}
 
 			void unlinkUD() {
 				this.U.D = this.D;
 				this.D.U = this.U;
-				updates++;
+				searchStats.linkUpdates++;
 			}
 
 			void relinkUD() {
 				this.U.D = this.D.U = this;
-				updates++;
+				searchStats.linkUpdates++;
 			}
 
 			void relinkLR() {
 				this.L.R = this.R.L = this;
-				updates++;
+				searchStats.linkUpdates++;
 			}
 
 			public DancingNode() {
@@ -139,17 +210,43 @@ public class DancingLinksSolver extends StdSudokuSolver {
 
 		private ColumnNode header;
 		private int solutions = 0;
-		private int updates = 0;
+		// work done by this helper's searches
+		final SolverStats searchStats = new SolverStats();
+		private int solutionLimit = 1;
 		private SudokuHandler handler;
 		private List<DancingNode> answer;
 		public int[][] resolvedGrid;
 
+		@Override
+		public SolverStats getSearchStats() {
+			return searchStats;
+		}
+
 		// solve sudoku using recursive approach
-		private void search(int k) {
+		// returns true once the solution limit is reached, the links are then
+		// left as they are and the search unwinds straight away.
+		private boolean search(int k) {
+			searchStats.visit(k);
+
+			// another worker reached the limit, or the limit of the solve was
+			// reached
+			if (parallelSearch != null && parallelSearch.isStopped())
+				return true;
+			if (limitReached())
+				return true;
+
 			// all the columns removed
 			if (header.R == header) {
 
-				resolvedGrid = handler.handleSolution(answer);
+				searchStats.solutions++;
+				if (parallelSearch != null)
+					return parallelSearch.foundSolution(handler.handleSolution(answer));
+
+				// keep the first solution, later ones are only counted.
+				if (solutions == 0)
+					resolvedGrid = handler.handleSolution(answer);
+				solutions++;
+				return solutions >= solutionLimit;
 
 			} else {
 
@@ -164,7 +261,8 @@ public class DancingLinksSolver extends StdSudokuSolver {
 						j.C.cover();
 					}
 					// recursively call search
-					search(k + 1);
+					if (search(k + 1))
+						return true;
 
 					r = answer.remove(answer.size() - 1);
 					c = r.C;
@@ -172,9 +270,11 @@ public class DancingLinksSolver extends StdSudokuSolver {
 					for (DancingNode j = r.L; j != r; j = j.L) {
 						j.C.uncover();
 					}
+					searchStats.backtracks++;
 				}
 				c.uncover();
 			}
+			return false;
 		}
 
 		private ColumnNode selectColumnNodeHeuristic() {
@@ -189,52 +289,169 @@ public class DancingLinksSolver extends StdSudokuSolver {
 			return ret;
 		}
 
-		// grid is a grid of 0s and 1s to solve the exact cover for
-		// returns the root column header node
-		private ColumnNode makeDLXBoard(int[][] grid) {
-			final int COLS = grid[0].length;
-			final int ROWS = grid.length;
+		// chooses rows up front, as for the givens of a puzzle. Returns false
+		// if a row clashes with one already chosen.
+		@Override
+		public boolean chooseRows(int[] rows) {
+			answer = new LinkedList<DancingNode>();
+			for (int rowIndex : rows) {
+				DancingNode r = rowIndex < rowNodes.length ? rowNodes[rowIndex] : null;
+				if (r == null)
+					return false;
+
+				// every node must still be linked in a column that is still open
+				DancingNode j = r;
+				do {
+					if (j.C.L.R != j.C || j.U.D != j)
+						return false;
+					j = j.R;
+				} while (j != r);
+
+				chooseRow(r);
+			}
+			return true;
+		}
+
+		private void chooseRow(DancingNode r) {
+			answer.add(r);
+			r.C.cover();
+			for (DancingNode j = r.R; j != r; j = j.R) {
+				j.C.cover();
+			}
+		}
+
+		private void unchooseRow(DancingNode r) {
+			for (DancingNode j = r.L; j != r; j = j.L) {
+				j.C.uncover();
+			}
+			r.C.uncover();
+		}
+
+		// enumerates the partial solutions below the rows already chosen, one
+		// branching level deeper at a time until there are at least target of
+		// them or maxDepth is reached. Each one is an independent subproblem of the
+		// search; complete solutions found above that depth are returned too.
+		@Override
+		public List<int[]> split(int target, int maxDepth) {
+			List<int[]> subproblems = expand(1);
+			for (int depth = 2; depth <= maxDepth && subproblems.size() < target; depth++) {
+				subproblems = expand(depth);
+			}
+			return subproblems;
+		}
+
+		public List<int[]> expand(int depth) {
+			List<int[]> subproblems = new ArrayList<int[]>();
+			expand(0, depth, new ArrayList<DancingNode>(), subproblems);
+			return subproblems;
+		}
+
+		private void expand(int k, int depth, List<DancingNode> path, List<int[]> subproblems) {
+			if (header.R == header || k == depth) {
+				int[] rows = new int[path.size()];
+				for (int i = 0; i < rows.length; i++) {
+					rows[i] = path.get(i).rowIndex;
+				}
+				subproblems.add(rows);
+				return;
+			}
+
+			// a column with a single row is a forced choice, not a level
+			ColumnNode c = selectColumnNodeHeuristic();
+			int level = c.size > 1 ? k + 1 : k;
+			c.cover();
+			for (DancingNode r = c.D; r != c; r = r.D) {
+				path.add(r);
+				for (DancingNode j = r.R; j != r; j = j.R) {
+					j.C.cover();
+				}
+
+				expand(level, depth, path, subproblems);
+
+				path.remove(path.size() - 1);
+				for (DancingNode j = r.L; j != r; j = j.L) {
+					j.C.uncover();
+				}
+			}
+			c.uncover();
+		}
 
+		// chooses the rows of the subproblem on top of the rows already chosen,
+		// searches the rest and unchooses them again. Returns false if the
+		// search stopped, the links are then left as they are.
+		@Override
+		public boolean runSubproblem(int[] rows) {
+			for (int rowIndex : rows) {
+				chooseRow(rowNodes[rowIndex]);
+			}
+			if (search(answer.size()))
+				return false;
+
+			for (int i = rows.length - 1; i >= 0; i--) {
+				unchooseRow(answer.remove(answer.size() - 1));
+			}
+			return true;
+		}
+
+		private ColumnNode[] columnNodes;
+		// first node of every row, by row index of the cover matrix
+		private DancingNode[] rowNodes = new DancingNode[0];
+
+		// creates the header and one column node per constraint column
+		// returns the root column header node
+		private ColumnNode makeDLXBoard(int columns) {
 			ColumnNode headerNode = new ColumnNode("header");
-			ArrayList<ColumnNode> columnNodes = new ArrayList<ColumnNode>();
+			columnNodes = new ColumnNode[columns];
 
-			for (int i = 0; i < COLS; i++) {
+			for (int i = 0; i < columns; i++) {
 				ColumnNode n = new ColumnNode(Integer.toString(i));
-				columnNodes.add(n);
+				columnNodes[i] = n;
 				headerNode = (ColumnNode) headerNode.hookRight(n);
 			}
 			headerNode = headerNode.R.C;
+			headerNode.size = columns;
 
-			for (int i = 0; i < ROWS; i++) {
-				DancingNode prev = null;
-				for (int j = 0; j < COLS; j++) {
-					if (grid[i][j] == 1) {
-						ColumnNode col = columnNodes.get(j);
-						DancingNode newNode = new DancingNode(col);
-						if (prev == null)
-							prev = newNode;
-						col.U.hookDown(newNode);
-						prev = prev.hookRight(newNode);
-						col.size++;
-					}
+			return headerNode;
+		}
+
+		// links one row of the cover matrix, given by the columns of its ones
+		public void addRow(int rowIndex, int[] columns) {
+			if (rowIndex >= rowNodes.length)
+				rowNodes = Arrays.copyOf(rowNodes, Math.max(rowIndex + 1, rowNodes.length * 2));
+
+			DancingNode prev = null;
+			for (int j : columns) {
+				ColumnNode col = columnNodes[j];
+				DancingNode newNode = new DancingNode(col);
+				newNode.rowIndex = rowIndex;
+				if (prev == null) {
+					prev = newNode;
+					rowNodes[rowIndex] = newNode;
 				}
+				col.U.hookDown(newNode);
+				prev = prev.hookRight(newNode);
+				col.size++;
 			}
+		}
 
-			headerNode.size = COLS;
-
-			return headerNode;
+		// the column lookup is only needed while rows are added
+		public void finishBoard() {
+			columnNodes = null;
 		}
 
-		public DancingLinkHelper(int[][] grid, SudokuHandler h) {
-			header = makeDLXBoard(grid);
+		public DancingLinkHelper(int columns, SudokuHandler h) {
+			header = makeDLXBoard(columns);
 			handler = h;
 		}
 
-		public void runSolver(String gridType, SudokuGrid grid) {
+		// returns the number of solutions found, at most solutionLimit
+		public int runSolver(String gridType, SudokuGrid grid, int solutionLimit) {
+			this.solutionLimit = solutionLimit;
 			solutions = 0;
-			updates = 0;
+			searchStats.reset();
 			answer = new LinkedList<DancingNode>();
 			search(0);
+			return solutions;
 		}
 	}
 
@@ -243,38 +460,27 @@ public class DancingLinksSolver extends StdSudokuSolver {
 
 		// default init
 		int size = 9;
+		int[] validNumbers;
 
 		public int[][] handleSolution(List<DancingNode> answer) {
 			int[][] result = parseBoard(answer);
 			return result;
 		}
 
-		// converts the Dancing nodes into 2D array.
+		// converts the Dancing nodes into 2D array. The row index of a node
+		// gives its cell and the index of its value in validNumbers.
 		private int[][] parseBoard(List<DancingNode> answer) {
 			int[][] result = new int[size][size];
 			for (DancingNode n : answer) {
-				DancingNode rcNode = n;
-
-				int min = Integer.parseInt(rcNode.C.name);
-				for (DancingNode tmp = n.R; tmp != n; tmp = tmp.R) {
-					int val = Integer.parseInt(tmp.C.name);
-					if (val < min) {
-						min = val;
-						rcNode = tmp;
-					}
-				}
-				int ans1 = Integer.parseInt(rcNode.C.name);
-				int ans2 = Integer.parseInt(rcNode.R.C.name);
-				int r = ans1 / size;
-				int c = ans1 % size;
-				int num = (ans2 % size) + 1;
-				result[r][c] = num;
+				int cell = n.rowIndex / size;
+				result[cell / size][cell % size] = validNumbers[n.rowIndex % size];
 			}
 			return result;
 		}
 
-		public SudokuHandler(int boardSize) {
-			size = boardSize;
+		public SudokuHandler(StdSudokuGrid stdgrid) {
+			size = stdgrid.size;
+			validNumbers = stdgrid.validNumbers;
 		}
 	}
 
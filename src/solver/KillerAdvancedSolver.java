@@ -5,6 +5,7 @@
 package solver;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 
@@ -16,38 +17,225 @@ import solver.KillerAdvancedSolver.DancingLinkHelper.DancingNode;
  * Your advanced solver for Killer Sudoku.
  */
 public class KillerAdvancedSolver extends KillerSudokuSolver {
-	// TODO: Add attributes as needed.
+	// search stops once this many solutions are found. 1 for a normal solve,
+	// 2 to check whether the solution is unique.
+	private int solutionLimit = 1;
+	// solutions found by the last solve, at most solutionLimit.
+	private int solutionCount = 0;
+	// second solution found by the last solve, null if it found fewer.
+	private int[][] secondSolution;
+
+	// workers of the parallel search, 1 searches sequentially. They run on the
+	// pool shared by every solver, so more workers than cores only queue.
+	private int parallelism = 1;
+	// most levels of the search tree expanded into independent subproblems.
+	private int splitDepth = 8;
+
+	// largest number of cage combination rows, as a multiple of the number of
+	// cell rows, for which the cage model is used. Beyond that the matrix gets
+	// too large and the cages are only checked as a filter during the search.
+	// 0 always uses the filter model.
+	private int combinationRowFactor = 1;
+
+	// state shared by the workers of a parallel search, null otherwise.
+	private ParallelSearch parallelSearch;
 
 	public KillerAdvancedSolver() {
 	} // end of KillerAdvancedSolver()
 
+	public void setParallelism(int parallelism) {
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	public void setSplitDepth(int splitDepth) {
+		this.splitDepth = Math.max(1, splitDepth);
+	}
+
+	public void setCombinationRowFactor(int combinationRowFactor) {
+		this.combinationRowFactor = Math.max(0, combinationRowFactor);
+	}
+
+	public void setSolutionLimit(int solutionLimit) {
+		this.solutionLimit = Math.max(1, solutionLimit);
+	}
+
+	public int getSolutionCount() {
+		return solutionCount;
+	}
+
+	// another solution than the one written to the grid, found when the
+	// solution limit is 2 or more and the puzzle isn't unique. Shows where the
+	// puzzle is ambiguous. Only kept by the sequential search.
+	public int[][] getSecondSolution() {
+		return secondSolution;
+	}
+
 	@Override
 	public boolean solve(SudokuGrid grid) {
 
 		KillerSudokuGrid killergrid = (KillerSudokuGrid) grid;
 
-		// build cover matrix out of sudoku board
-		int[][] cover = getCoverMatrix(killergrid);
+		if (parallelism > 1)
+			return solveParallel(killergrid);
 
-		DancingLinkHelper dlx = new DancingLinkHelper(cover, new KillerSudokuHandler(killergrid.size), killergrid);
+		// the limit of the solve can stop the cage enumeration already
+		if (!initCageCandidates(killergrid)) {
+			stats.reset();
+			solutionCount = 0;
+			secondSolution = null;
+			return false;
+		}
+		boolean cageModel = useCageModel(killergrid);
+		// the filter model places values on the grid while it searches, on a
+		// copy so that a search stopped by its limit leaves the grid untouched
+		DancingLinkHelper dlx = new DancingLinkHelper(killerColumns(killergrid, cageModel),
+				new KillerSudokuHandler(killergrid), cageModel ? killergrid : killergrid.copy(), cageModel);
+
+		// link the sparse cover matrix of the sudoku board straight into the dlx
+		buildKillerCover(killergrid, cageModel, dlx::addRow);
+		dlx.finishBoard();
 
 		// run a method to solve the problem
-		dlx.gridSolver();
+		solutionCount = dlx.gridSolver(solutionLimit);
+		secondSolution = dlx.secondGrid;
+		stats.reset();
+		stats.add(dlx.searchStats);
 
-		// get the solved board.
+		// get the first solved board.
 		int[][] answer = dlx.resolvedGrid;
 
-		// if the value in board is 0 that means it might be empty.
-		if (answer == null || answer[0][0] == 0)
+		if (solutionCount == 0 || answer == null)
 			return false;
 
 		killergrid.grid = answer;
+		killergrid.rebuildMasks();
 		return true;
 	} // end of solve()
 
+	// solves the subproblems below the givens on the shared pool. Every
+	// worker links its own copy of the cover over its own copy of the grid, as
+	// the cage state changes during the search.
+	private boolean solveParallel(KillerSudokuGrid killergrid) {
+		stats.reset();
+		solutionCount = 0;
+		secondSolution = null;
+		if (!initCageCandidates(killergrid))
+			return false;
+
+		// the cover is built once and linked again by every worker
+		boolean cageModel = useCageModel(killergrid);
+		SparseCover cover = new SparseCover();
+		buildKillerCover(killergrid, cageModel, cover);
+
+		parallelSearch = new ParallelSearch(solutionLimit);
+		int[][] answer = parallelSearch.run(() -> linkHelper(cover, killergrid.copy(), cageModel),
+				givenRows(killergrid), parallelism, splitDepth);
+		solutionCount = parallelSearch.solutionCount();
+		parallelSearch = null;
+
+		if (answer == null)
+			return false;
+
+		killergrid.grid = answer;
+		killergrid.rebuildMasks();
+		return true;
+	} // end of solveParallel()
+
+	// links the sparse cover into a new dancing links structure over the grid
+	private DancingLinkHelper linkHelper(SparseCover cover, KillerSudokuGrid killergrid, boolean cageModel) {
+		DancingLinkHelper dlx = new DancingLinkHelper(killerColumns(killergrid, cageModel),
+				new KillerSudokuHandler(killergrid), killergrid, cageModel);
+		cover.replay(dlx::addRow);
+		dlx.finishBoard();
+		return dlx;
+	}
+
+	// the cage model is used when every cell is in a cage, every cage has its
+	// combinations enumerated and the cages don't have too many combinations
+	// between them.
+	private boolean useCageModel(KillerSudokuGrid killergrid) {
+		for (int cage : killergrid.cageOf) {
+			if (cage < 0)
+				return false;
+		}
+
+		long combinations = 0;
+		for (CageCombinationTable.CageCandidates cage : cageCandidates) {
+			// the combinations of an open cage aren't known
+			if (cage.isOpen())
+				return false;
+			combinations += cage.combinationCount();
+		}
+		int size = killergrid.size;
+		return combinations <= (long) combinationRowFactor * size * size * size;
+	}
+
+	// Number of columns of the cover matrix. The cage model adds one column per
+	// cage, covered by the combination chosen for it, and one column per cage
+	// and value, covered either by the cell of the cage holding the value or by
+	// the cage's combination if the value isn't part of it.
+	private int killerColumns(KillerSudokuGrid killergrid, boolean cageModel) {
+		int columns = killergrid.size * killergrid.size * CONSTRAINTS;
+		if (cageModel)
+			columns += cageCandidates.length * (killergrid.size + 1);
+		return columns;
+	}
+
+	// emits the cover matrix of the grid, with the cage columns and the cage
+	// combination rows when the cage model is used. Combination rows are
+	// numbered from size^3, after the cell rows.
+	private void buildKillerCover(final KillerSudokuGrid killergrid, boolean cageModel,
+			final CoverRowHandler handler) {
+		if (!cageModel) {
+			buildCover(killergrid, handler);
+			return;
+		}
+
+		final int size = killergrid.size;
+		final int cageColumn = size * size * CONSTRAINTS;
+		final int valueColumn = cageColumn + cageCandidates.length;
+
+		// every cell row also covers the (cage, value) column of its cell
+		final int[] rowColumns = new int[CONSTRAINTS + 1];
+		buildCover(killergrid, new CoverRowHandler() {
+			@Override
+			public void addRow(int rowIndex, int[] columns) {
+				System.arraycopy(columns, 0, rowColumns, 0, CONSTRAINTS);
+				int cage = killergrid.cageOf[rowIndex / size];
+				rowColumns[CONSTRAINTS] = valueColumn + cage * size + rowIndex % size;
+				handler.addRow(rowIndex, rowColumns);
+			}
+		});
+
+		// one row per combination of every cage, covering the cage column and
+		// the (cage, value) columns of the values left out of the combination
+		int rowIndex = size * size * size;
+		for (int cage = 0; cage < cageCandidates.length; cage++) {
+			CageCombinationTable.CageCandidates candidates = cageCandidates[cage];
+			if (candidates.combinationCount() == 0)
+				continue;
+			int cageSize = killergrid.cagePairList.get(cage).size;
+			int[] columns = new int[1 + size - cageSize];
+
+			for (int i = 0; i < candidates.combinationCount(); i++) {
+				long combination = candidates.combination(i);
+				columns[0] = cageColumn + cage;
+				int j = 1;
+				for (int value = 0; value < size; value++) {
+					if ((combination & (1L << value)) == 0)
+						columns[j++] = valueColumn + cage * size + value;
+				}
+				handler.addRow(rowIndex++, columns);
+			}
+		}
+	}
+
 	// internal helper class to solve the problem using dancing link
-	class DancingLinkHelper {
+	class DancingLinkHelper implements SubproblemSearch {
 		KillerSudokuGrid killerGrid;
+		// cages are part of the cover matrix, otherwise they are checked as a
+		// filter on every row chosen.
+		final boolean cageModel;
 
 		class DancingNode {
 			DancingNode left, right, up, down;
@@ -76,12 +264,12 @@ public class KillerAdvancedSolver extends KillerSudokuSolver {
 			void unlinkUD() {
 				this.up.down = this.down;
 				this.down.up = this.up;
-				updates++;
+				searchStats.linkUpdates++;
 			}
 
 			void relinkUD() {
 				this.up.down = this.down.up = this;
-				updates++;
+				searchStats.linkUpdates++;
 			}
 
 			public DancingNode() {
@@ -97,23 +285,25 @@ public class KillerAdvancedSolver extends KillerSudokuSolver {
 			void unlinkLR() {
 				this.left.right = this.right;
 				this.right.left = this.left;
-				updates++;
+				searchStats.linkUpdates++;
 			}
 
 			void relinkLR() {
 				this.left.right = this.right.left = this;
-				updates++;
+				searchStats.linkUpdates++;
 			}
 		}
 
 		class ColumnNode extends DancingNode {
 			int size; // number of ones in current column
 			String name;
+			int index; // column of the cover matrix, -1 for the header
 
 			public ColumnNode(String n) {
 				super();
 				size = 0;
 				name = n;
+				index = -1;
 				C = this;
 			}
 
@@ -145,10 +335,93 @@ public class KillerAdvancedSolver extends KillerSudokuSolver {
 		// local variables
 		private ColumnNode header;
 		private int solutions = 0;
+		// work done by this helper's searches
+		final SolverStats searchStats = new SolverStats();
+		private int solutionLimit = 1;
 		private KillerSudokuHandler handler;
 		private List<DancingNode> answer;
 		public int[][] resolvedGrid;
-		private int updates = 0;
+		public int[][] secondGrid;
+
+		@Override
+		public SolverStats getSearchStats() {
+			return searchStats;
+		}
+
+		// places the value of a cell row on the grid, returns false if the value
+		// doesn't fit the cell's cage. In the cage model the cover matrix
+		// enforces the cages itself and the grid isn't used.
+		private boolean enterRow(DancingNode r) {
+			if (cageModel)
+				return true;
+
+			if (!fitsCage(r))
+				return false;
+
+			int[] v = getRowAttribute(r);
+			killerGrid.setValue(v[0], v[1], v[2]);
+			return true;
+		}
+
+		// true if the value of the cell row still fits the cell's cage: the
+		// cage bounds first, then the value must be part of a combination of
+		// the cage that includes the values already used.
+		private boolean fitsCage(DancingNode r) {
+			int size = killerGrid.size;
+			int cell = r.rowNumber / size;
+			int index = r.rowNumber % size;
+
+			searchStats.constraintChecks++;
+			if (!cageBoundsOk(killerGrid, cell / size, cell % size, index))
+				return false;
+			long cageMask = cageCandidateMask(killerGrid, cell / size, cell % size);
+			return (cageMask & (1L << index)) != 0;
+		}
+
+		// removes the value placed by enterRow().
+		private void leaveRow(DancingNode r) {
+			if (cageModel)
+				return;
+
+			int[] v = getRowAttribute(r);
+			killerGrid.clearValue(v[0], v[1]);
+		}
+
+		// the column with the fewest rows left. In the filter model only the
+		// cell columns are considered, so every choice fills a cell and the
+		// cages are completed early, and only the rows that still fit their
+		// cage are counted. A cell whose values are all rejected by its cage is
+		// then found as a dead end straight away.
+		private ColumnNode selectColumn() {
+			int cellColumns = killerGrid.size * killerGrid.size;
+			int min = Integer.MAX_VALUE;
+			ColumnNode ret = null;
+			for (ColumnNode c = (ColumnNode) header.right; c != header; c = (ColumnNode) c.right) {
+				// the cell columns come first.
+				if (!cageModel && c.index >= cellColumns)
+					break;
+				// can't have fewer rows than linked rows.
+				if (c.size >= min)
+					continue;
+
+				int count = c.size;
+				if (!cageModel) {
+					count = 0;
+					for (DancingNode r = c.down; r != c && count < min; r = r.down) {
+						if (fitsCage(r))
+							count++;
+					}
+				}
+
+				if (count < min) {
+					min = count;
+					ret = c;
+					if (min <= 1)
+						break;
+				}
+			}
+			return ret;
+		}
 
 		// gets the row location and value
 		private int[] getRowAttribute(DancingNode dn) {
@@ -165,37 +438,57 @@ public class KillerAdvancedSolver extends KillerSudokuSolver {
 		}
 
 		// Heart of the algorithm
+		// returns true once the solution limit is reached, the links are then
+		// left as they are and the search unwinds straight away.
 		private boolean solveGrid(int k) {
-			if (header.right == header) { // all the columns removed
-				resolvedGrid = handler.handleSudokuSolution(answer);
+			searchStats.visit(k);
+
+			// another worker reached the limit, or the limit of the solve was
+			// reached
+			if (parallelSearch != null && parallelSearch.isStopped())
+				return true;
+			if (limitReached())
 				return true;
 
+			if (header.right == header) { // all the columns removed
+				searchStats.solutions++;
+				if (parallelSearch != null)
+					return parallelSearch.foundSolution(handler.handleSudokuSolution(answer));
+
+				// keep the first two solutions, later ones are only counted.
+				if (solutions == 0)
+					resolvedGrid = handler.handleSudokuSolution(answer);
+				else if (solutions == 1)
+					secondGrid = handler.handleSudokuSolution(answer);
+				solutions++;
+				return solutions >= solutionLimit;
+
 			} else {
 
-				ColumnNode c = (ColumnNode) header.right;
+				ColumnNode c = selectColumn();
 				c.cover();
 
 				// loop through each row node in a column
 				for (DancingNode r = c.down; r != c; r = r.down) {
-					int[] v = getRowAttribute(r);
-					if (killerGrid.isCagesTotalOk(v[0], v[1], v[2])) {
-						killerGrid.grid[v[0]][v[1]] = v[2];
+					if (enterRow(r)) {
 						answer.add(r);
 
 						for (DancingNode j = r.right; j != r; j = j.right) {
 							j.C.cover();
 						}
 						// recursive call
-						solveGrid(k + 1);
+						if (solveGrid(k + 1))
+							return true;
 
 						r = answer.remove(answer.size() - 1);
-						killerGrid.grid[v[0]][v[1]] = 0;
+						leaveRow(r);
 
 						c = r.C;
 
 						for (DancingNode j = r.left; j != r; j = j.left) {
 							j.C.uncover();
 						}
+						searchStats.backtracks++;
 					}
 				}
 				c.uncover();
@@ -203,54 +496,182 @@ public class KillerAdvancedSolver extends KillerSudokuSolver {
 			return false;
 		}
 
-		// grid is a grid of 0s and 1s to solve the exact cover for
-		// returns the root column header node
-		private ColumnNode makeDLXBoard(int[][] grid) {
-			final int COLS = grid[0].length;
-			final int ROWS = grid.length;
+		// chooses rows up front, as for the givens of a puzzle. Their values
+		// are already on the grid, so only the links change. Returns false if
+		// a row clashes with one already chosen.
+		@Override
+		public boolean chooseRows(int[] rows) {
+			answer = new LinkedList<DancingNode>();
+			for (int rowNumber : rows) {
+				DancingNode r = rowNumber < rowNodes.length ? rowNodes[rowNumber] : null;
+				if (r == null)
+					return false;
+
+				// every node must still be linked in a column that is still open
+				DancingNode j = r;
+				do {
+					if (j.C.left.right != j.C || j.up.down != j)
+						return false;
+					j = j.right;
+				} while (j != r);
+
+				coverRow(r);
+			}
+			return true;
+		}
+
+		private void coverRow(DancingNode r) {
+			answer.add(r);
+			r.C.cover();
+			for (DancingNode j = r.right; j != r; j = j.right) {
+				j.C.cover();
+			}
+		}
+
+		private void uncoverRow(DancingNode r) {
+			for (DancingNode j = r.left; j != r; j = j.left) {
+				j.C.uncover();
+			}
+			r.C.uncover();
+		}
+
+		// enumerates the partial solutions below the rows already chosen, one
+		// branching level deeper at a time until there are at least target of
+		// them or maxDepth is reached. Each one is an independent subproblem of the
+		// search; complete solutions found above that depth are returned too.
+		@Override
+		public List<int[]> split(int target, int maxDepth) {
+			List<int[]> subproblems = expand(1);
+			for (int depth = 2; depth <= maxDepth && subproblems.size() < target; depth++) {
+				subproblems = expand(depth);
+			}
+			return subproblems;
+		}
+
+		public List<int[]> expand(int depth) {
+			List<int[]> subproblems = new ArrayList<int[]>();
+			expand(0, depth, new ArrayList<DancingNode>(), subproblems);
+			return subproblems;
+		}
 
+		private void expand(int k, int depth, List<DancingNode> path, List<int[]> subproblems) {
+			if (header.right == header || k == depth) {
+				int[] rows = new int[path.size()];
+				for (int i = 0; i < rows.length; i++) {
+					rows[i] = path.get(i).rowNumber;
+				}
+				subproblems.add(rows);
+				return;
+			}
+
+			// a column with a single row is a forced choice, not a level
+			ColumnNode c = selectColumn();
+			int level = c.size > 1 ? k + 1 : k;
+			c.cover();
+			for (DancingNode r = c.down; r != c; r = r.down) {
+				if (!enterRow(r))
+					continue;
+
+				path.add(r);
+				for (DancingNode j = r.right; j != r; j = j.right) {
+					j.C.cover();
+				}
+
+				expand(level, depth, path, subproblems);
+
+				path.remove(path.size() - 1);
+				leaveRow(r);
+				for (DancingNode j = r.left; j != r; j = j.left) {
+					j.C.uncover();
+				}
+			}
+			c.uncover();
+		}
+
+		// chooses the rows of the subproblem on top of the rows already chosen,
+		// searches the rest and unchooses them again. Returns false if the
+		// search stopped, the links and the grid are then left as they are.
+		@Override
+		public boolean runSubproblem(int[] rows) {
+			for (int rowNumber : rows) {
+				DancingNode r = rowNodes[rowNumber];
+				enterRow(r);
+				coverRow(r);
+			}
+			if (solveGrid(answer.size()))
+				return false;
+
+			for (int i = rows.length - 1; i >= 0; i--) {
+				DancingNode r = answer.remove(answer.size() - 1);
+				leaveRow(r);
+				uncoverRow(r);
+			}
+			return true;
+		}
+
+		private ColumnNode[] columnNodes;
+		// first node of every row, by row index of the cover matrix
+		private DancingNode[] rowNodes = new DancingNode[0];
+
+		// creates the header and one column node per constraint column
+		// returns the root column header node
+		private ColumnNode makeDLXBoard(int columns) {
 			ColumnNode headerNode = new ColumnNode("header");
-			ArrayList<ColumnNode> columnNodes = new ArrayList<ColumnNode>();
+			columnNodes = new ColumnNode[columns];
 
-			for (int i = 0; i < COLS; i++) {
+			for (int i = 0; i < columns; i++) {
 				ColumnNode n = new ColumnNode(Integer.toString(i));
-				columnNodes.add(n);
+				n.index = i;
+				columnNodes[i] = n;
 				headerNode = (ColumnNode) headerNode.hookRight(n);
 			}
 			headerNode = headerNode.right.C;
+			headerNode.size = columns;
+			return headerNode;
+		}
 
-			// loop through all the dlx rows and parse it to the cell.
-			for (int i = 0; i < ROWS; i++) {
-				DancingNode prev = null;
-				for (int j = 0; j < COLS; j++) {
-					if (grid[i][j] == 1) {
-						ColumnNode col = columnNodes.get(j);
-						DancingNode newNode = new DancingNode(col, i);
-						if (prev == null)
-							prev = newNode;
-						col.up.hookDown(newNode);
-						prev = prev.hookRight(newNode);
-						col.size++;
-					}
+		// links one dlx row, given by the columns of its ones, to the cells.
+		public void addRow(int rowIndex, int[] columns) {
+			if (rowIndex >= rowNodes.length)
+				rowNodes = Arrays.copyOf(rowNodes, Math.max(rowIndex + 1, rowNodes.length * 2));
+
+			DancingNode prev = null;
+			for (int j : columns) {
+				ColumnNode col = columnNodes[j];
+				DancingNode newNode = new DancingNode(col, rowIndex);
+				if (prev == null) {
+					prev = newNode;
+					rowNodes[rowIndex] = newNode;
 				}
+				col.up.hookDown(newNode);
+				prev = prev.hookRight(newNode);
+				col.size++;
 			}
-			headerNode.size = COLS;
-			return headerNode;
+		}
+
+		// the column lookup is only needed while rows are added
+		public void finishBoard() {
+			columnNodes = null;
 		}
 
 		// cnstr
-		public DancingLinkHelper(int[][] board, KillerSudokuHandler h, KillerSudokuGrid _killerGrid) {
+		public DancingLinkHelper(int columns, KillerSudokuHandler h, KillerSudokuGrid _killerGrid,
+				boolean _cageModel) {
 			killerGrid = _killerGrid;
-			header = makeDLXBoard(board);
+			cageModel = _cageModel;
+			header = makeDLXBoard(columns);
 			handler = h;
 		}
 
 		// calls the solution to solve grid
-		public void gridSolver() {
+		// returns the number of solutions found, at most solutionLimit
+		public int gridSolver(int solutionLimit) {
+			this.solutionLimit = solutionLimit;
 			solutions = 0;
-			updates = 0;
+			searchStats.reset();
 			answer = new LinkedList<DancingNode>();
 			solveGrid(0);
+			return solutions;
 		}
 	}
 
@@ -258,38 +679,31 @@ public class KillerAdvancedSolver extends KillerSudokuSolver {
 	class KillerSudokuHandler {
 		// default init
 		int size = 9;
+		int[] validNumbers;
 
 		public int[][] handleSudokuSolution(List<DancingNode> answer) {
 			int[][] result = convertDlToBoard(answer);
 			return result;
 		}
 
-		// converts dancing link to the 2D sudoku board.
+		// converts dancing link to the 2D sudoku board. The row number of a
+		// cell row gives its cell and value, cage combination rows are skipped.
 		private int[][] convertDlToBoard(List<DancingNode> answer) {
 			int[][] result = new int[size][size];
+			int cellRows = size * size * size;
 			for (DancingNode n : answer) {
-				DancingNode rcNode = n;
-
-				int min = Integer.parseInt(rcNode.C.name);
-				for (DancingNode tmp = n.right; tmp != n; tmp = tmp.right) {
-					int val = Integer.parseInt(tmp.C.name);
-					if (val < min) {
-						min = val;
-						rcNode = tmp;
-					}
-				}
-				int ans1 = Integer.parseInt(rcNode.C.name);
-				int ans2 = Integer.parseInt(rcNode.right.C.name);
-				int r = ans1 / size;
-				int c = ans1 % size;
-				int num = (ans2 % size) + 1;
-				result[r][c] = num;
+				if (n.rowNumber >= cellRows)
+					continue;
+
+				int cell = n.rowNumber / size;
+				result[cell / size][cell % size] = validNumbers[n.rowNumber % size];
 			}
 			return result;
 		}
 
-		public KillerSudokuHandler(int boardSize) {
-			size = boardSize;
+		public KillerSudokuHandler(KillerSudokuGrid killergrid) {
+			size = killergrid.size;
+			validNumbers = killergrid.validNumbers;
 		}
 	}
 } // end of class KillerAdvancedSolver
@@ -20,6 +20,23 @@ public class KillerBackTrackingSolver extends KillerSudokuSolver {
 	@Override
 	public boolean solve(SudokuGrid grid) {
 		KillerSudokuGrid stdgrid = (KillerSudokuGrid) grid;
+
+		// the unit masks have to match the grid before searching.
+		stdgrid.rebuildMasks();
+		stats.reset();
+		if (!initCageCandidates(stdgrid))
+			return false;
+
+		return solveGrid(stdgrid, 0);
+	} // end of solve()
+
+	// recursively fills the first empty cell with each of its candidates.
+	private boolean solveGrid(KillerSudokuGrid stdgrid, int depth) {
+		stats.visit(depth);
+		// the limit of the solve was reached, give up.
+		if (limitReached())
+			return false;
+
 		int size = stdgrid.size;
 		int[] validNumbers = stdgrid.validNumbers;
 		int[][] board = stdgrid.grid;
@@ -28,24 +45,31 @@ public class KillerBackTrackingSolver extends KillerSudokuSolver {
 			for (int col = 0; col < size; col++) {
 				if (board[row][col] == EMPTY) {
 
-					for (int number : validNumbers) {
-						// check if the value satifies all the constraints.
-						if (isOkToInsert(row, col, number, stdgrid)) {
-							board[row][col] = number;
-							// call recursive method
-							if (solve(grid)) {
-								return true;
-							} else {
-								board[row][col] = EMPTY;
-							}
+					// only the values not used in the row, column and box that
+					// still complete a valid combination of the cell's cage.
+					long candidates = stdgrid.candidateMask(row, col) & cageCandidateMask(stdgrid, row, col);
+					stats.constraintChecks++;
+
+					while (candidates != 0) {
+						int number = validNumbers[Long.numberOfTrailingZeros(candidates)];
+						candidates &= candidates - 1;
+
+						stdgrid.setValue(row, col, number);
+						// call recursive method
+						if (solveGrid(stdgrid, depth + 1)) {
+							return true;
+						} else {
+							stdgrid.clearValue(row, col);
+							stats.backtracks++;
 						}
 					}
 					return false;
 				}
 			}
 		}
+		stats.solutions++;
 		return true;
-	} // end of solve()
+	} // end of solveGrid()
 
 	// combined methods to check the constarints before inserting a value
 	public boolean isOkToInsert(int row, int col, int number, KillerSudokuGrid grid) {
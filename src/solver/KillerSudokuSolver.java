@@ -15,16 +15,97 @@ import grid.StdSudokuGrid;
  */
 public abstract class KillerSudokuSolver extends SudokuSolver
 {
+	// combination candidates of each cage, in the order of cagePairList.
+	protected CageCombinationTable.CageCandidates[] cageCandidates;
+
+	// looks up the shared combination table for every cage of the grid. The
+	// cages are enumerated under the limit of the solve, false if it stopped
+	// them.
+	protected boolean initCageCandidates(KillerSudokuGrid grid) {
+		CageCombinationTable table = CageCombinationTable.forValidNumbers(grid.validNumbers);
+		int noOfCages = grid.cagePairList.size();
+
+		cageCandidates = new CageCombinationTable.CageCandidates[noOfCages];
+		for (int i = 0; i < noOfCages; i++) {
+			KillerSudokuGrid.CagePair cagePair = grid.cagePairList.get(i);
+			cageCandidates[i] = table.forCage(cagePair.total, cagePair.size, limit);
+			if (cageCandidates[i] == null)
+				return false;
+		}
+		return true;
+	}
+
+	// mask of the values that still fit a combination of the cell's cage.
+	protected long cageCandidateMask(KillerSudokuGrid grid, int row, int col) {
+		int cage = grid.cageOf[row * grid.size + col];
+		if (cage < 0)
+			return 0;
+		return cageMask(cageCandidates[cage], grid, row, col);
+	}
+
+	// mask of the values that still fit the cage of the cell. An open cage
+	// offers every unused value, so they are checked against the cage bounds
+	// one by one: the last cell of a cage then only takes the value that makes
+	// up its total.
+	static long cageMask(CageCombinationTable.CageCandidates candidates, KillerSudokuGrid grid, int row, int col) {
+		int cage = grid.cageOf[row * grid.size + col];
+		long mask = candidates.candidates(grid.cageUsed[cage]);
+		if (!candidates.isOpen())
+			return mask;
+
+		long bounded = 0;
+		for (long rest = mask; rest != 0; rest &= rest - 1) {
+			int index = Long.numberOfTrailingZeros(rest);
+			if (cageBoundsOk(grid, row, col, index))
+				bounded |= 1L << index;
+		}
+		return bounded;
+	}
+
+	// true if the cell's cage can still reach its total with the value at the
+	// given index placed in the cell: the other empty cells of the cage, filled
+	// with distinct unused values, must be able to make up the rest of the
+	// total without overshooting it. Only needs the running cage state, so it
+	// is a cheap check before the combinations are looked at.
+	protected static boolean cageBoundsOk(KillerSudokuGrid grid, int row, int col, int index) {
+		int cage = grid.cageOf[row * grid.size + col];
+		if (cage < 0)
+			return false;
+
+		KillerSudokuGrid.CagePair cagePair = grid.cagePairList.get(cage);
+		int cellsLeft = cagePair.size - grid.cageFilled[cage] - 1;
+		int remaining = cagePair.total - grid.cageSum[cage] - grid.validNumbers[index];
+		long unused = grid.fullMask & ~grid.cageUsed[cage] & ~(1L << index);
+
+		if (cellsLeft == 0)
+			return remaining == 0;
+		if (Long.bitCount(unused) < cellsLeft)
+			return false;
+
+		// validNumbers are sorted, so the lowest bits are the smallest values.
+		int low = 0, high = 0;
+		long lowBits = unused, highBits = unused;
+		for (int i = 0; i < cellsLeft; i++) {
+			int lowIndex = Long.numberOfTrailingZeros(lowBits);
+			lowBits &= lowBits - 1;
+			low += grid.validNumbers[lowIndex];
+
+			int highIndex = 63 - Long.numberOfLeadingZeros(highBits);
+			highBits &= ~(1L << highIndex);
+			high += grid.validNumbers[highIndex];
+		}
+		return low <= remaining && remaining <= high;
+	}
+
 	
 	private void initConstants(KillerSudokuGrid grid) {
 		SIZE = grid.size;
-		MIN_VALUE = minValue(grid.validNumbers);
-		MAX_VALUE = maxValue(grid.validNumbers);
 		BOX_SIZE = (int) Math.sqrt(SIZE);
 	}
 	
-	protected int[][] getCoverMatrix(KillerSudokuGrid killergrid){
+	// emits the sparse cover matrix of the grid to the handler.
+	protected void buildCover(KillerSudokuGrid killergrid, CoverRowHandler handler) {
 		initConstants(killergrid);
-		return convertInCoverMatrix(killergrid.grid);
+		buildSparseCover(killergrid.grid, killergrid.validNumbers, handler);
 	}
 } // end of class KillerSudokuSolver
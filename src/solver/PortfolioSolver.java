@@ -0,0 +1,180 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package solver;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import grid.StdSudokuGrid;
+import grid.SudokuGrid;
+
+/**
+ * Races several solvers on the same puzzle. Every member solves its own copy
+ * of the grid on its own thread; the first member to finish, with a solution
+ * or with a proof that there is none, wins and the others are cancelled. Which
+ * solver is fastest depends a lot on the puzzle, so the portfolio counts the
+ * wins of every member, to tune its members from real puzzles.
+ *
+ * All members must solve the same type of game. A solve returns once every
+ * member has stopped, so the members can be used again by the next solve.
+ * Under a limit the members share its deadline and its node budget, the nodes
+ * of all members together count against it.
+ */
+public class PortfolioSolver extends SudokuSolver {
+	private final String[] names;
+	private final SudokuSolver[] members;
+
+	// solves won by each member, counted by every thread solving with the
+	// portfolio.
+	private final AtomicLongArray wins;
+	// member that won the last solve, -1 if none did.
+	private int lastWinner = -1;
+
+	// one thread per member, started on the first solve.
+	private ExecutorService pool;
+
+	/**
+	 * @param names   Names of the members, used to report the winner.
+	 * @param members Solvers to race, all for the same type of game.
+	 */
+	public PortfolioSolver(String[] names, SudokuSolver[] members) {
+		if (names.length != members.length || members.length == 0)
+			throw new IllegalArgumentException("a portfolio needs one name per member and at least one member");
+
+		this.names = names.clone();
+		this.members = members.clone();
+		wins = new AtomicLongArray(members.length);
+	} // end of PortfolioSolver()
+
+	@Override
+	public boolean solve(SudokuGrid grid) {
+		StdSudokuGrid stdgrid = (StdSudokuGrid) grid;
+		int noOfMembers = members.length;
+
+		stats.reset();
+		lastWinner = -1;
+
+		// every member gets its own limit, under the limit of this solve if
+		// there is one, so it can be cancelled on its own. The member limits
+		// share the node budget of the solve.
+		final SearchLimit[] limits = new SearchLimit[noOfMembers];
+		final StdSudokuGrid[] copies = new StdSudokuGrid[noOfMembers];
+		final SolveResult[] results = new SolveResult[noOfMembers];
+		// first member to finish, it cancels the others straight away instead
+		// of waiting for this thread to be scheduled
+		final AtomicInteger first = new AtomicInteger(-1);
+		ExecutorCompletionService<Integer> finished = new ExecutorCompletionService<Integer>(pool());
+
+		for (int i = 0; i < noOfMembers; i++) {
+			final int member = i;
+			limits[i] = limit != null ? new SearchLimit(limit) : new SearchLimit(SearchLimit.NONE, SearchLimit.NONE);
+			copies[i] = stdgrid.copy();
+			finished.submit(() -> {
+				results[member] = members[member].solve(copies[member], limits[member]);
+				if (results[member] != SolveResult.ABORTED && first.compareAndSet(-1, member))
+					cancelAll(limits, member);
+				return member;
+			});
+		}
+
+		// wait for every member to stop
+		RuntimeException failure = null;
+		boolean interrupted = false;
+		for (int remaining = noOfMembers; remaining > 0;) {
+			try {
+				finished.take().get();
+				remaining--;
+			} catch (InterruptedException e) {
+				// stop every member, but still wait for them to unwind
+				interrupted = true;
+				cancelAll(limits, -1);
+				continue;
+			} catch (ExecutionException e) {
+				remaining--;
+				if (failure == null)
+					failure = new IllegalStateException("portfolio member failed", e.getCause());
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+
+		int winner = first.get();
+		if (winner < 0) {
+			if (failure != null)
+				throw failure;
+			// every member stopped at the limit of this solve
+			if (limit != null)
+				limit.stop();
+			return false;
+		}
+
+		wins.incrementAndGet(winner);
+		lastWinner = winner;
+		stats.add(members[winner].getStats());
+		if (results[winner] != SolveResult.SOLVED)
+			return false;
+
+		stdgrid.grid = copies[winner].grid;
+		stdgrid.rebuildMasks();
+		return true;
+	} // end of solve()
+
+	private static void cancelAll(SearchLimit[] limits, int except) {
+		for (int i = 0; i < limits.length; i++) {
+			if (i != except)
+				limits[i].cancel();
+		}
+	}
+
+	private synchronized ExecutorService pool() {
+		if (pool == null) {
+			// daemon threads, so an idle portfolio doesn't keep the program
+			// running
+			pool = Executors.newFixedThreadPool(members.length, new ThreadFactory() {
+				private int count = 0;
+
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "portfolio-" + names[count++ % names.length]);
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return pool;
+	}
+
+	// name of the member that won the last solve, null if none did.
+	public String getWinner() {
+		return lastWinner >= 0 ? names[lastWinner] : null;
+	}
+
+	public String[] getMemberNames() {
+		return names.clone();
+	}
+
+	// solves won by each member so far, in the order of getMemberNames().
+	public long[] getWins() {
+		long[] counts = new long[wins.length()];
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = wins.get(i);
+		}
+		return counts;
+	}
+
+	// stops the member threads once they are idle. They are started again by
+	// the next solve.
+	public synchronized void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+	}
+} // end of class PortfolioSolver
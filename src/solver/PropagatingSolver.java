@@ -0,0 +1,74 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package solver;
+
+import grid.StdSudokuGrid;
+import grid.SudokuGrid;
+
+/**
+ * Runs constraint propagation before handing the grid to another solver.
+ * Grids solved by propagation alone never reach the search, the rest reach it
+ * with fewer empty cells. Works with any of the standard or Killer solvers.
+ */
+public class PropagatingSolver extends SudokuSolver {
+	private final SudokuSolver solver;
+	private final ConstraintPropagator propagator = new ConstraintPropagator();
+
+	// cells filled by the last propagation.
+	private int propagatedCells = 0;
+
+	public PropagatingSolver(SudokuSolver solver) {
+		this.solver = solver;
+	} // end of PropagatingSolver()
+
+	public SudokuSolver getSolver() {
+		return solver;
+	}
+
+	public int getPropagatedCells() {
+		return propagatedCells;
+	}
+
+	@Override
+	public boolean solve(SudokuGrid grid) {
+		StdSudokuGrid stdgrid = (StdSudokuGrid) grid;
+
+		stdgrid.rebuildMasks();
+		stats.reset();
+
+		// propagation and search work on a copy, so a grid without a solution,
+		// or a solve stopped by its limit, leaves the caller's grid as it was
+		StdSudokuGrid work = stdgrid.copy();
+
+		// a limit that stops the cage enumeration stops the solve
+		propagatedCells = propagator.propagate(work, stats, limit);
+		if (propagatedCells == ConstraintPropagator.CONTRADICTION || limitStopped())
+			return false;
+
+		boolean solved;
+		if (ConstraintPropagator.isComplete(work)) {
+			// the propagation only places values that fit, but the grid is
+			// checked before it is returned as a solution
+			solved = work.findViolation() == null;
+			if (solved)
+				stats.solutions++;
+		} else {
+			// the search runs under the limit of this solve, if it has one
+			solved = limit != null ? solver.solve(work, limit) == SolveResult.SOLVED : solver.solve(work);
+			// the search counters, plus the checks made by the propagation.
+			long checks = stats.constraintChecks;
+			stats.reset();
+			stats.add(solver.getStats());
+			stats.constraintChecks += checks;
+		}
+		if (!solved)
+			return false;
+
+		stdgrid.grid = work.grid;
+		stdgrid.rebuildMasks();
+		return true;
+	} // end of solve()
+
+} // end of class PropagatingSolver
@@ -0,0 +1,137 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package solver;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits a solve to a deadline and a number of search nodes, and lets another
+ * thread cancel it. Every solver calls reached() once per search node and
+ * unwinds as soon as it returns true, so a limit is honoured within a node.
+ *
+ * reached() is meant to cost next to nothing: a counter, a volatile read and,
+ * every CLOCK_INTERVAL nodes, a read of the clock. Parallel searches share the
+ * limit between their workers, the node count is then approximate.
+ *
+ * A limit is meant for one solve. Once reached it stays reached, and a cancel()
+ * made before the solve starts stops it straight away.
+ *
+ * Child limits, one per search running under the same limit, share its node
+ * budget: each child adds its nodes to the parent in batches of at most 1/64
+ * of the budget, so together they can overshoot it by at most a batch each.
+ */
+public class SearchLimit {
+	// no deadline, or no node limit.
+	public static final long NONE = Long.MAX_VALUE;
+
+	// nodes between two reads of the clock, a power of two.
+	private static final int CLOCK_INTERVAL = 256;
+	// smallest number of batches a child counts its parent's budget in.
+	private static final int BATCHES_PER_BUDGET = 64;
+
+	// System.nanoTime() value the search stops at, NONE if there is none.
+	private final long deadline;
+	private final long maxNodes;
+	// the search also stops once the parent limit is stopped, null if none.
+	private final SearchLimit parent;
+
+	// nodes visited so far.
+	private long nodes = 0;
+	// nodes a child adds to its parent at once, a power of two.
+	private final int batch;
+	// nodes of the children, added by their threads.
+	private final AtomicLong childNodes = new AtomicLong();
+	// set once the search has to stop, by the search itself or by cancel().
+	private volatile boolean stopped = false;
+	private volatile boolean cancelled = false;
+
+	/**
+	 * @param deadline System.nanoTime() value to stop at, or NONE.
+	 * @param maxNodes Search nodes to stop after, or NONE.
+	 */
+	public SearchLimit(long deadline, long maxNodes) {
+		this.deadline = deadline;
+		this.maxNodes = maxNodes;
+		this.parent = null;
+		this.batch = 1;
+	}
+
+	/**
+	 * A limit with the deadline of parent and a share of its node budget,
+	 * stopped when parent is. Lets one of several searches under the same
+	 * limit be stopped on its own.
+	 */
+	public SearchLimit(SearchLimit parent) {
+		this.deadline = parent.deadline;
+		this.maxNodes = parent.maxNodes;
+		this.parent = parent;
+		this.batch = (int) Long.highestOneBit(Math.max(1, Math.min(CLOCK_INTERVAL, maxNodes / BATCHES_PER_BUDGET)));
+	}
+
+	// a limit with a deadline the timeout from now and no node limit.
+	public static SearchLimit timeout(long timeoutNanos) {
+		return new SearchLimit(System.nanoTime() + timeoutNanos, NONE);
+	}
+
+	// a limit on the number of search nodes only.
+	public static SearchLimit nodes(long maxNodes) {
+		return new SearchLimit(NONE, maxNodes);
+	}
+
+	/**
+	 * Counts a search node and checks the limits.
+	 *
+	 * @return True if the search has to stop.
+	 */
+	public boolean reached() {
+		if (stopped)
+			return true;
+
+		if (parent != null && parent.stopped) {
+			stopped = true;
+		} else if (++nodes > maxNodes) {
+			stopped = true;
+		} else if (parent != null && maxNodes != NONE && (nodes & (batch - 1)) == 0 && parent.addChildNodes(batch)) {
+			stopped = true;
+		} else if ((nodes & (CLOCK_INTERVAL - 1)) == 0 && deadline != NONE && System.nanoTime() - deadline >= 0) {
+			stopped = true;
+		}
+		return stopped;
+	}
+
+	// counts nodes of a child, returns true once the children together used up
+	// the budget. The other children then stop at their next node.
+	private boolean addChildNodes(int count) {
+		if (nodes + childNodes.addAndGet(count) > maxNodes)
+			stopped = true;
+		return stopped;
+	}
+
+	// stops the search, from any thread.
+	public void cancel() {
+		cancelled = true;
+		stopped = true;
+	}
+
+	// marks the limit as reached, for a search made of several searches that
+	// were all stopped by limits derived from this one.
+	void stop() {
+		stopped = true;
+	}
+
+	// true if the search was told to stop, for whatever reason.
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	// nodes visited so far, with those the children have added.
+	public long getNodes() {
+		return nodes + childNodes.get();
+	}
+} // end of class SearchLimit
@@ -0,0 +1,19 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package solver;
+
+/**
+ * Outcome of a solve with a SearchLimit, see SudokuSolver.solve(SudokuGrid,
+ * SearchLimit).
+ */
+public enum SolveResult {
+	// the grid holds a solution.
+	SOLVED,
+	// the whole search tree was searched without finding a solution.
+	UNSOLVABLE,
+	// the search stopped at the deadline, at the node limit or when it was
+	// cancelled, before finding a solution.
+	ABORTED
+} // end of enum SolveResult
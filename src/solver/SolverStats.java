@@ -0,0 +1,61 @@
+/*
+ * @author Jeffrey Chan & Minyi Li, RMIT 2020
+ */
+
+package solver;
+
+/**
+ * Counters of the work done by a solver during one solve. The counters are
+ * plain fields bumped from the search loops, so they are cheap enough to stay
+ * on all the time. A solver keeps one instance, reset at the start of every
+ * solve, see SudokuSolver.getStats().
+ */
+public class SolverStats {
+	// search tree nodes visited.
+	public long nodes;
+	// choices undone after their subtree failed.
+	public long backtracks;
+	// deepest level of the search tree reached.
+	public int maxDepth;
+	// dancing links unlinks and relinks, or rows and columns removed and
+	// restored by the algorithm X matrix.
+	public long linkUpdates;
+	// candidate masks and cage checks evaluated.
+	public long constraintChecks;
+	// complete solutions found.
+	public long solutions;
+
+	public void reset() {
+		nodes = 0;
+		backtracks = 0;
+		maxDepth = 0;
+		linkUpdates = 0;
+		constraintChecks = 0;
+		solutions = 0;
+	}
+
+	// counts a visit to a node at the given depth of the search tree.
+	public void visit(int depth) {
+		nodes++;
+		if (depth > maxDepth)
+			maxDepth = depth;
+	}
+
+	// adds the counts of other, e.g. of one worker of a parallel search or of
+	// one puzzle of a batch. Safe to call from several threads at once.
+	public synchronized void add(SolverStats other) {
+		nodes += other.nodes;
+		backtracks += other.backtracks;
+		maxDepth = Math.max(maxDepth, other.maxDepth);
+		linkUpdates += other.linkUpdates;
+		constraintChecks += other.constraintChecks;
+		solutions += other.solutions;
+	}
+
+	@Override
+	public String toString() {
+		return "nodes = " + nodes + ", backtracks = " + backtracks + ", max depth = " + maxDepth
+				+ ", link updates = " + linkUpdates + ", constraint checks = " + constraintChecks
+				+ ", solutions = " + solutions;
+	}
+} // end of class SolverStats
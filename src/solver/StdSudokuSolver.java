@@ -4,8 +4,6 @@
 
 package solver;
 
-import java.util.Arrays;
-
 import grid.KillerSudokuGrid;
 import grid.StdSudokuGrid;
 
@@ -18,14 +16,20 @@ public abstract class StdSudokuSolver extends SudokuSolver {
 	
 	private void initConstants(StdSudokuGrid grid) {
 		SIZE = grid.size;
-		MIN_VALUE = minValue(grid.validNumbers);
-		MAX_VALUE = maxValue(grid.validNumbers);
 		BOX_SIZE = (int) Math.sqrt(SIZE);
 	}
 	
-	protected int[][] getCoverMatrix(StdSudokuGrid stdgrid){
+	// emits the sparse cover matrix of the grid to the handler.
+	protected void buildCover(StdSudokuGrid stdgrid, CoverRowHandler handler) {
+		initConstants(stdgrid);
+		buildSparseCover(stdgrid.grid, stdgrid.validNumbers, handler);
+	}
+
+	// emits the sparse cover matrix of an empty grid of the same size, every
+	// cell with a row for every value.
+	protected void buildEmptyCover(StdSudokuGrid stdgrid, CoverRowHandler handler) {
 		initConstants(stdgrid);
-		return convertInCoverMatrix(stdgrid.grid);
+		buildSparseCover(new int[stdgrid.size][stdgrid.size], stdgrid.validNumbers, handler);
 	}
 
 } // end of class StdSudokuSolver
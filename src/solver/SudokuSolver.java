@@ -4,8 +4,17 @@
 
 package solver;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
+import grid.StdSudokuGrid;
 import grid.SudokuGrid;
 
 /**
@@ -24,122 +33,266 @@ public abstract class SudokuSolver {
 	 */
 	public abstract boolean solve(SudokuGrid grid);
 
-	// Grid size
-	protected int SIZE;
-	// Box size
-	protected int BOX_SIZE;
-	protected int EMPTY_CELL = 0;
-	// 4 constraints : cell, line, column, boxes
-	protected static final int CONSTRAINTS = 4;
-	// Values for each cells
-	protected int MIN_VALUE;
-	protected int MAX_VALUE;
-	// Starting index for cover matrix
-	protected static final int START_INDEX = 1;
-
-	// Find minimum (lowest) value in array using array sort
-	protected static int minValue(int[] numbers) {
-		Arrays.sort(numbers);
-		return numbers[0];
+	// work done by the last solve, reset when a solve starts.
+	protected final SolverStats stats = new SolverStats();
+
+	// limit of the solve in progress, null if it has none. The search checks
+	// it at every node through limitReached().
+	protected SearchLimit limit;
+
+	/**
+	 * Solves the input grid like solve(grid), but gives up once the limit is
+	 * reached: at its deadline, after its number of search nodes, or when
+	 * another thread cancels it.
+	 *
+	 * @param grid  Input grid to solve. The solver will write the solution to
+	 *              grid.
+	 * @param limit Limit of this solve.
+	 *
+	 * @return SOLVED if the grid holds a solution, UNSOLVABLE if the search
+	 *         proved it has none, ABORTED if the limit stopped it first.
+	 */
+	public SolveResult solve(SudokuGrid grid, SearchLimit limit) {
+		SearchLimit previous = this.limit;
+		this.limit = limit;
+		try {
+			if (solve(grid))
+				return SolveResult.SOLVED;
+			return limit.isStopped() ? SolveResult.ABORTED : SolveResult.UNSOLVABLE;
+		} finally {
+			this.limit = previous;
+		}
 	}
 
-	// Find maximum (largest) value in array using array sort
-	protected static int maxValue(int[] numbers) {
-		Arrays.sort(numbers);
-		return numbers[numbers.length - 1];
+	// counts a search node against the limit of the solve, true if the search
+	// has to stop.
+	protected final boolean limitReached() {
+		SearchLimit current = limit;
+		return current != null && current.reached();
 	}
 
-	// Index in the cover matrix
-	protected int indexInCoverMatrix(int row, int column, int num) {
-		return (row - 1) * SIZE * SIZE + (column - 1) * SIZE + (num - 1);
+	// true if the limit of the solve stopped it, without counting a node.
+	protected final boolean limitStopped() {
+		SearchLimit current = limit;
+		return current != null && current.isStopped();
 	}
 
-	// Building of an empty cover matrix
-	private int[][] buildCoverMatrix() {
-		int[][] coverMatrix = new int[SIZE * SIZE * MAX_VALUE][SIZE * SIZE * CONSTRAINTS];
+	// pool shared by the parallel searches of every solver, one thread per
+	// core. Created on first use, its threads are daemons.
+	private static ForkJoinPool searchPool;
 
-		int header = 0;
-		header = buildCellConstraints(coverMatrix, header);
-		header = buildRowConstraints(coverMatrix, header);
-		header = buildColumnConstraints(coverMatrix, header);
-		buildBoxConstraints(coverMatrix, header);
-		return coverMatrix;
+	protected static synchronized ForkJoinPool searchPool() {
+		if (searchPool == null)
+			searchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		return searchPool;
 	}
 
-	private int buildColumnConstraints(int[][] matrix, int header) {
-		for (int column = START_INDEX; column <= SIZE; column++) {
-			for (int n = START_INDEX; n <= SIZE; n++, header++) {
-				for (int row = START_INDEX; row <= SIZE; row++) {
-					int index = indexInCoverMatrix(row, column, n);
-					matrix[index][header] = 1;
-				}
-			}
-		}
+	// subproblems made per worker of a parallel search, so a worker that
+	// finishes early takes another one.
+	protected static final int SUBPROBLEMS_PER_WORKER = 8;
 
-		return header;
+	// A dancing links structure searched by one worker of a parallel search.
+	protected interface SubproblemSearch {
+		// chooses rows up front, false if a row clashes with one already chosen
+		boolean chooseRows(int[] rows);
+
+		// expands the top of the search below the chosen rows into at least
+		// target subproblems, at most maxDepth levels deep
+		List<int[]> split(int target, int maxDepth);
+
+		// searches one subproblem, false if the search stopped
+		boolean runSubproblem(int[] rows);
+
+		SolverStats getSearchStats();
 	}
 
-	private int buildRowConstraints(int[][] matrix, int header) {
-		for (int row = START_INDEX; row <= SIZE; row++) {
-			for (int n = START_INDEX; n <= SIZE; n++, header++) {
-				for (int column = START_INDEX; column <= SIZE; column++) {
-					int index = indexInCoverMatrix(row, column, n);
-					matrix[index][header] = 1;
-				}
+	// State shared by the workers of a parallel search. The searches of the
+	// workers report their solutions to it and stop once it is stopped.
+	protected class ParallelSearch {
+		private final int solutionLimit;
+		private final AtomicBoolean stopped = new AtomicBoolean(false);
+		private final AtomicInteger solutions = new AtomicInteger(0);
+		private final AtomicReference<int[][]> firstGrid = new AtomicReference<int[][]>();
+
+		protected ParallelSearch(int solutionLimit) {
+			this.solutionLimit = solutionLimit;
+		}
+
+		// chooses the givens, expands the top of the rest of the search tree
+		// into subproblems and solves them on the shared pool. Every worker links
+		// its own structure once and searches subproblems until none are left.
+		// Returns the first solution found, null if there is none.
+		protected int[][] run(Supplier<SubproblemSearch> linker, int[] givens, int parallelism, int splitDepth) {
+			if (givens == null)
+				return null;
+			SubproblemSearch master = linker.get();
+			if (!master.chooseRows(givens))
+				return null;
+
+			List<int[]> subproblems = master.split(parallelism * SUBPROBLEMS_PER_WORKER, splitDepth);
+			if (subproblems.isEmpty()) {
+				stats.add(master.getSearchStats());
+				return null;
 			}
+			AtomicInteger next = new AtomicInteger(0);
+
+			// the master already has the givens chosen, it is the first worker
+			int workers = Math.min(parallelism, subproblems.size());
+			ForkJoinPool pool = searchPool();
+			List<ForkJoinTask<?>> tasks = new ArrayList<ForkJoinTask<?>>();
+			for (int w = 0; w < workers; w++) {
+				SubproblemSearch first = w == 0 ? master : null;
+				tasks.add(pool.submit(() -> runWorker(first, linker, givens, subproblems, next)));
+			}
+			for (ForkJoinTask<?> task : tasks) {
+				task.join();
+			}
+			return firstGrid.get();
+		} // end of run()
+
+		// one worker, dlx is its structure with the givens chosen or null to
+		// link it here.
+		private void runWorker(SubproblemSearch dlx, Supplier<SubproblemSearch> linker, int[] givens,
+				List<int[]> subproblems, AtomicInteger next) {
+			if (dlx == null) {
+				dlx = linker.get();
+				dlx.chooseRows(givens);
+			}
+
+			while (!stopped.get() && !limitStopped()) {
+				int i = next.getAndIncrement();
+				if (i >= subproblems.size() || !dlx.runSubproblem(subproblems.get(i)))
+					break;
+			}
+			stats.add(dlx.getSearchStats());
+		} // end of runWorker()
+
+		// true once the solution limit is reached by any worker
+		protected boolean isStopped() {
+			return stopped.get();
 		}
 
-		return header;
+		// records a solution found by a worker, returns true once the limit is
+		// reached and the other workers have been told to stop.
+		protected boolean foundSolution(int[][] result) {
+			firstGrid.compareAndSet(null, result);
+			if (solutions.incrementAndGet() >= solutionLimit) {
+				stopped.set(true);
+				return true;
+			}
+			return false;
+		}
+
+		// solutions found, at most the solution limit
+		protected int solutionCount() {
+			return Math.min(solutions.get(), solutionLimit);
+		}
+	} // end of class ParallelSearch
+
+	/**
+	 * Search statistics of the last solve.
+	 *
+	 * @return The counters of this solver, updated in place by every solve.
+	 */
+	public SolverStats getStats() {
+		return stats;
 	}
 
-	private int buildBoxConstraints(int[][] matrix, int header) {
-		for (int row = START_INDEX; row <= SIZE; row += BOX_SIZE) {
-			for (int column = START_INDEX; column <= SIZE; column += BOX_SIZE) {
-				for (int n = START_INDEX; n <= SIZE; n++, header++) {
-					for (int rowDelta = 0; rowDelta < BOX_SIZE; rowDelta++) {
-						for (int columnDelta = 0; columnDelta < BOX_SIZE; columnDelta++) {
-							int index = indexInCoverMatrix(row + rowDelta, column + columnDelta, n);
-							matrix[index][header] = 1;
-						}
-					}
-				}
+	// Grid size
+	protected int SIZE;
+	// Box size
+	protected int BOX_SIZE;
+	protected int EMPTY_CELL = 0;
+	// 4 constraints : cell, line, column, boxes
+	protected static final int CONSTRAINTS = 4;
+
+	// Receives the rows of the cover matrix one at a time. columns is reused
+	// between calls, so it has to be copied if it is kept.
+	protected interface CoverRowHandler {
+		void addRow(int rowIndex, int[] columns);
+	}
+
+	// A cover matrix kept in sparse form, so it can be linked into several
+	// dancing links structures without building it again.
+	protected static class SparseCover implements CoverRowHandler {
+		private int noOfRows = 0;
+		private int[] rowIndices = new int[64];
+		private int[][] rowColumns = new int[64][];
+
+		@Override
+		public void addRow(int rowIndex, int[] columns) {
+			if (noOfRows == rowIndices.length) {
+				rowIndices = Arrays.copyOf(rowIndices, noOfRows * 2);
+				rowColumns = Arrays.copyOf(rowColumns, noOfRows * 2);
 			}
+			rowIndices[noOfRows] = rowIndex;
+			rowColumns[noOfRows] = columns.clone();
+			noOfRows++;
 		}
-		return header;
-	}
 
-	private int buildCellConstraints(int[][] matrix, int header) {
-		for (int row = START_INDEX; row <= SIZE; row++) {
-			for (int column = START_INDEX; column <= SIZE; column++, header++) {
-				for (int n = START_INDEX; n <= SIZE; n++) {
-					int index = indexInCoverMatrix(row, column, n);
-					matrix[index][header] = 1;
-				}
+		// passes every stored row on to the handler, in the original order
+		public void replay(CoverRowHandler handler) {
+			for (int i = 0; i < noOfRows; i++) {
+				handler.addRow(rowIndices[i], rowColumns[i]);
 			}
 		}
+	}
 
-		return header;
+	// Number of columns in the cover matrix
+	protected int coverColumns() {
+		return SIZE * SIZE * CONSTRAINTS;
 	}
 
-	// Converting Sudoku grid as a cover matrix
-	protected int[][] convertInCoverMatrix(int[][] grid) {
-		int[][] coverMatrix = buildCoverMatrix();
-
-		// Taking into account the values already entered in Sudoku's grid instance
-		for (int row = START_INDEX; row <= SIZE; row++) {
-			for (int column = START_INDEX; column <= SIZE; column++) {
-				int n = grid[row - 1][column - 1];
-
-				if (n != EMPTY_CELL) {
-					for (int num = MIN_VALUE; num <= MAX_VALUE; num++) {
-						if (num != n) {
-							Arrays.fill(coverMatrix[indexInCoverMatrix(row, column, num)], 0);
-						}
-					}
-				}
+	// Index in the cover matrix of the row placing value index num in the cell
+	protected int indexInCoverMatrix(int row, int column, int num) {
+		return (row * SIZE + column) * SIZE + num;
+	}
+
+	// rows of the cover matrix placing the givens, null if a given is not a
+	// valid number. SIZE must be set, as it is once the cover is built.
+	protected int[] givenRows(StdSudokuGrid stdgrid) {
+		int size = stdgrid.size;
+		int[] rows = new int[size * size];
+		int noOfGivens = 0;
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				if (stdgrid.grid[row][col] == EMPTY_CELL)
+					continue;
+
+				int index = stdgrid.symbolIndex(stdgrid.grid[row][col]);
+				if (index < 0)
+					return null;
+				rows[noOfGivens++] = indexInCoverMatrix(row, col, index);
 			}
 		}
+		return Arrays.copyOf(rows, noOfGivens);
+	}
+
+	// Emits every candidate row of the cover matrix with its column indices.
+	// Each row has exactly one 1 per constraint, so the matrix itself is never
+	// built. Cells holding a given value only get the row of that value.
+	protected void buildSparseCover(int[][] grid, int[] validNumbers, CoverRowHandler handler) {
+		int cells = SIZE * SIZE;
+		int[] columns = new int[CONSTRAINTS];
+
+		for (int row = 0; row < SIZE; row++) {
+			for (int column = 0; column < SIZE; column++) {
+				int given = grid[row][column];
+				int givenIndex = given == EMPTY_CELL ? -1 : Arrays.binarySearch(validNumbers, given);
+				int box = (row / BOX_SIZE) * BOX_SIZE + column / BOX_SIZE;
 
-		return coverMatrix;
+				for (int num = 0; num < SIZE; num++) {
+					if (given != EMPTY_CELL && num != givenIndex)
+						continue;
+
+					// cell, row, column and box constraints, in column order
+					columns[0] = row * SIZE + column;
+					columns[1] = cells + row * SIZE + num;
+					columns[2] = 2 * cells + column * SIZE + num;
+					columns[3] = 3 * cells + box * SIZE + num;
+					handler.addRow(indexInCoverMatrix(row, column, num), columns);
+				}
+			}
+		}
 	}
 } // end of class SudokuSolver
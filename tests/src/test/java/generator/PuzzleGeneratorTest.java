@@ -0,0 +1,119 @@
+package generator;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+
+import org.junit.Test;
+
+import grid.KillerSudokuGrid;
+import grid.StdSudokuGrid;
+import solver.DancingLinksSolver;
+import solver.KillerAdvancedSolver;
+
+/**
+ * Generates puzzles from a few seeds and checks them with an unlimited search:
+ * every puzzle has exactly one solution and every Killer cage is connected.
+ */
+public class PuzzleGeneratorTest {
+
+	private static final long[] SEEDS = { 1, 2, 3, 4, 5 };
+
+	@Test
+	public void standardPuzzlesAreUnique() throws IOException {
+		for (int size : new int[] { 4, 9 }) {
+			for (long seed : SEEDS) {
+				StdSudokuGrid puzzle = new PuzzleGenerator(seed).generateStd(size);
+
+				DancingLinksSolver solver = new DancingLinksSolver();
+				solver.setSolutionLimit(2);
+				StdSudokuGrid grid = puzzle.copy();
+				assertTrue("seed " + seed, solver.solve(grid));
+				assertEquals("seed " + seed, 1, solver.getSolutionCount());
+				assertTrue("seed " + seed, grid.validate());
+			}
+		}
+	}
+
+	@Test
+	public void killerPuzzlesAreUnique() throws IOException {
+		for (int size : new int[] { 4, 9 }) {
+			for (long seed : SEEDS) {
+				KillerSudokuGrid puzzle = new PuzzleGenerator(seed).generateKiller(size);
+
+				KillerAdvancedSolver solver = new KillerAdvancedSolver();
+				solver.setSolutionLimit(2);
+				KillerSudokuGrid grid = puzzle.copy();
+				assertTrue("seed " + seed, solver.solve(grid));
+				assertEquals("seed " + seed, 1, solver.getSolutionCount());
+				assertTrue("seed " + seed, grid.validate());
+			}
+		}
+	}
+
+	@Test
+	public void killerCagesAreConnected() throws IOException {
+		for (int maxCageSize : new int[] { 2, 4, 6 }) {
+			for (long seed : SEEDS) {
+				PuzzleGenerator generator = new PuzzleGenerator(seed);
+				generator.setMaxCageSize(maxCageSize);
+				KillerSudokuGrid puzzle = generator.generateKiller(9);
+
+				for (int cell = 0; cell < puzzle.cageOf.length; cell++) {
+					assertTrue("seed " + seed + ": cell " + cell + " is in no cage", puzzle.cageOf[cell] >= 0);
+				}
+				for (int cage = 0; cage < puzzle.cagePairList.size(); cage++) {
+					assertEquals("seed " + seed + ", cage " + cage, puzzle.cagePairList.get(cage).size,
+							connectedCells(puzzle, cage));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void sameSeedGivesSamePuzzle() throws IOException {
+		StdSudokuGrid first = new PuzzleGenerator(7).generateStd(9);
+		StdSudokuGrid second = new PuzzleGenerator(7).generateStd(9);
+		for (int row = 0; row < 9; row++) {
+			assertArrayEquals(first.grid[row], second.grid[row]);
+		}
+
+		KillerSudokuGrid firstKiller = new PuzzleGenerator(7).generateKiller(9);
+		KillerSudokuGrid secondKiller = new PuzzleGenerator(7).generateKiller(9);
+		assertArrayEquals(firstKiller.cageOf, secondKiller.cageOf);
+	}
+
+	// cells of the cage reached from its first cell through neighbouring cells
+	// of the same cage.
+	private static int connectedCells(KillerSudokuGrid puzzle, int cage) {
+		int size = puzzle.size;
+		int start = 0;
+		while (puzzle.cageOf[start] != cage) {
+			start++;
+		}
+
+		boolean[] seen = new boolean[size * size];
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		seen[start] = true;
+		queue.add(start);
+		int reached = 0;
+		while (!queue.isEmpty()) {
+			int cell = queue.poll();
+			reached++;
+			int row = cell / size;
+			int col = cell % size;
+			int[] around = { row > 0 ? cell - size : -1, row < size - 1 ? cell + size : -1,
+					col > 0 ? cell - 1 : -1, col < size - 1 ? cell + 1 : -1 };
+			for (int next : around) {
+				if (next >= 0 && !seen[next] && puzzle.cageOf[next] == cage) {
+					seen[next] = true;
+					queue.add(next);
+				}
+			}
+		}
+		return reached;
+	}
+} // end of class PuzzleGeneratorTest
@@ -0,0 +1,152 @@
+package grid;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Reads corpus lines from memory. Every malformed line must be rejected with
+ * an IOException naming its line, never with a runtime exception.
+ */
+public class CompactPuzzleReaderTest {
+
+	private static final String STD_4 = "1.3..2.44.2..3.1";
+
+	private static StdSudokuGrid readOne(String corpus) throws IOException {
+		try (CompactPuzzleReader reader = new CompactPuzzleReader(
+				ByteBuffer.wrap(corpus.getBytes(StandardCharsets.US_ASCII)))) {
+			return reader.next();
+		}
+	}
+
+	private static void readAll(String corpus) throws IOException {
+		try (CompactPuzzleReader reader = new CompactPuzzleReader(
+				ByteBuffer.wrap(corpus.getBytes(StandardCharsets.US_ASCII)))) {
+			while (reader.next() != null) {
+			}
+		}
+	}
+
+	private static String rejected(String corpus) {
+		IOException e = assertThrows(IOException.class, () -> readAll(corpus));
+		return e.getMessage();
+	}
+
+	@Test
+	public void readsStandardLine() throws IOException {
+		StdSudokuGrid grid = readOne(STD_4 + "\n");
+		assertEquals(4, grid.size);
+		assertEquals(1, grid.grid[0][0]);
+		assertEquals(0, grid.grid[0][1]);
+		assertEquals(2, grid.grid[1][1]);
+	}
+
+	@Test
+	public void readsKillerLine() throws IOException {
+		StdSudokuGrid grid = readOne("4;3=0,1;7=2,3\r\n");
+		assertTrue(grid instanceof KillerSudokuGrid);
+		KillerSudokuGrid killer = (KillerSudokuGrid) grid;
+		assertEquals(2, killer.cagePairList.size());
+		assertEquals(-1, killer.cageOf[4]);
+	}
+
+	@Test
+	public void skipsCommentsAndEmptyLines() throws IOException {
+		try (CompactPuzzleReader reader = new CompactPuzzleReader(
+				ByteBuffer.wrap(("# corpus\n\n" + STD_4).getBytes(StandardCharsets.US_ASCII)))) {
+			assertEquals(4, reader.next().size);
+			assertNull(reader.next());
+		}
+	}
+
+	@Test
+	public void rejectsBadStandardLines() {
+		assertTrue(rejected("12345").contains("size * size cells"));
+		assertTrue(rejected("1.3..2.44.2..3.5").contains("invalid cell symbol"));
+		assertTrue(rejected("1.3..2.44.2..3.!").contains("invalid cell symbol"));
+		assertTrue(rejected(repeat('.', 81 * 81)).contains("larger than"));
+	}
+
+	@Test
+	public void readsEveryValueOfTheLargestSize() throws IOException {
+		// each row of the 64x64 grid holds the values 1 to 64 once
+		int size = StdSudokuGrid.MAX_SIZE;
+		StdSudokuGrid grid = new StdSudokuGrid();
+		grid.initEmptyGrid(size, numbers(size));
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				grid.grid[row][col] = (row + col) % size + 1;
+			}
+		}
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (CompactPuzzleWriter writer = new CompactPuzzleWriter(out)) {
+			writer.write(grid);
+		}
+		StdSudokuGrid read = readOne(new String(out.toByteArray(), StandardCharsets.US_ASCII));
+		assertEquals(size, read.size);
+		for (int row = 0; row < size; row++) {
+			assertArrayEquals("row " + row, grid.grid[row], read.grid[row]);
+		}
+	}
+
+	@Test
+	public void rejectsTruncatedKillerLines() {
+		assertTrue(rejected("4;3").contains("expected '='"));
+		assertTrue(rejected("4;3=").contains("expected a number"));
+		assertTrue(rejected("4;3=0,").contains("expected a number"));
+		assertTrue(rejected("4;").contains("expected a number"));
+		assertTrue(rejected("4;3=0 1").contains("expected ';'"));
+	}
+
+	@Test
+	public void rejectsBadKillerSizes() {
+		assertTrue(rejected("3;3=0").contains("not a square"));
+		assertTrue(rejected("0;3=0").contains("not a square"));
+		assertTrue(rejected("100;3=0").contains("larger than"));
+		assertTrue(rejected("2147483647;3=0").contains("not a square"));
+	}
+
+	@Test
+	public void rejectsNumberOverflow() {
+		assertTrue(rejected("4;99999999999=0").contains("too large"));
+		assertTrue(rejected("4;3=4294967297").contains("too large"));
+	}
+
+	@Test
+	public void rejectsBadKillerCells() {
+		assertTrue(rejected("4;3=16").contains("outside the grid"));
+		assertTrue(rejected("4;3=0,1;5=1").contains("already in a cage"));
+	}
+
+	@Test
+	public void reportsTheLineNumber() {
+		String message = rejected(STD_4 + "\n# comment\n4;3=0,99\n");
+		assertTrue(message, message.startsWith("line 3, column 7:"));
+	}
+
+	private static int[] numbers(int size) {
+		int[] numbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = i + 1;
+		}
+		return numbers;
+	}
+
+	private static String repeat(char c, int count) {
+		StringBuilder sb = new StringBuilder(count);
+		for (int i = 0; i < count; i++) {
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+} // end of class CompactPuzzleReaderTest
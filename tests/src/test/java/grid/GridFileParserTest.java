@@ -0,0 +1,152 @@
+package grid;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Reads grid files from memory. Every malformed file must be rejected with an
+ * IOException naming its line and column, before the grid is allocated.
+ */
+public class GridFileParserTest {
+
+	private static final String STD_HEADER = "4\n1 2 3 4\n";
+	private static final String KILLER_HEADER = STD_HEADER + "2\n";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static void readStd(String text) throws IOException {
+		byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+		new StdSudokuGrid().initGrid("test.in", data, data.length);
+	}
+
+	private static void readKiller(String text) throws IOException {
+		byte[] data = text.getBytes(StandardCharsets.US_ASCII);
+		new KillerSudokuGrid().initGrid("test.in", data, data.length);
+	}
+
+	private static String rejectedStd(String text) {
+		return assertThrows(IOException.class, () -> readStd(text)).getMessage();
+	}
+
+	private static String rejectedKiller(String text) {
+		return assertThrows(IOException.class, () -> readKiller(text)).getMessage();
+	}
+
+	@Test
+	public void tokenises() throws IOException {
+		byte[] data = " 12\t-7 +3\r\n\n  \n5,6".getBytes(StandardCharsets.US_ASCII);
+		GridFileParser parser = new GridFileParser("test.in", data, data.length);
+		assertEquals(3, parser.countIntsOnLine());
+		assertEquals(12, parser.readInt());
+		assertEquals(-7, parser.readInt());
+		assertEquals(3, parser.readInt());
+		parser.endLine();
+		assertFalse(parser.atEnd());
+		assertEquals(5, parser.readInt());
+		parser.expect(',');
+		assertEquals(6, parser.readInt());
+		assertTrue(parser.atEnd());
+	}
+
+	@Test
+	public void readsGrids() throws IOException {
+		byte[] data = (STD_HEADER + "0,0 1\n3,3 2\n").getBytes(StandardCharsets.US_ASCII);
+		StdSudokuGrid grid = new StdSudokuGrid();
+		grid.initGrid("test.in", data, data.length);
+		assertEquals(1, grid.grid[0][0]);
+		assertEquals(2, grid.grid[3][3]);
+
+		data = (KILLER_HEADER + "3 0,0 0,1\n7 1,0 1,1\n").getBytes(StandardCharsets.US_ASCII);
+		KillerSudokuGrid killer = new KillerSudokuGrid();
+		killer.initGrid("test.in", data, data.length);
+		assertEquals(2, killer.cagePairList.size());
+		assertEquals(1, killer.cageOf[4]);
+	}
+
+	@Test
+	public void rejectsBadSizes() {
+		// sizes that would need huge grids are rejected before allocating them
+		assertTrue(rejectedStd("30000\n1 2 3\n0,0 1").contains("not a square"));
+		assertTrue(rejectedStd("10000\n1 2 3\n0,0 1").contains("larger than 64"));
+		assertTrue(rejectedStd("2147483647\n1\n").contains("not a square"));
+		assertTrue(rejectedStd("0\n1\n").contains("not a square"));
+		assertTrue(rejectedStd("-4\n1\n").contains("not a square"));
+		assertTrue(rejectedStd("99999999999\n1\n").contains("out of range"));
+		assertTrue(rejectedKiller("30000\n1 2 3\n1\n").contains("not a square"));
+	}
+
+	@Test
+	public void rejectsBadValidNumbers() {
+		assertTrue(rejectedStd("9\n1 2 3\n0,0 1").contains("expected 9 valid numbers, got 3"));
+		assertTrue(rejectedStd("4\n").contains("expected 4 valid numbers, got 0"));
+		assertTrue(rejectedStd("4\n1 2 2 4\n").contains("repeated"));
+		assertTrue(rejectedStd("4\n0 1 2 3\n").contains("empty cell"));
+		assertTrue(rejectedStd("4\n1 2 x 4\n").contains("expected a number"));
+		assertTrue(rejectedKiller("9\n1 2 3\n1\n").contains("expected 9 valid numbers"));
+	}
+
+	@Test
+	public void rejectsBadGivens() {
+		assertTrue(rejectedStd(STD_HEADER + "4,0 1\n").contains("row 4 is outside"));
+		assertTrue(rejectedStd(STD_HEADER + "0,-1 1\n").contains("column -1 is outside"));
+		assertTrue(rejectedStd(STD_HEADER + "0,0 5\n").contains("not a valid number"));
+		assertTrue(rejectedStd(STD_HEADER + "0 0 1\n").contains("expected ','"));
+		assertTrue(rejectedStd(STD_HEADER + "0,0\n").contains("expected a number"));
+		assertTrue(rejectedStd(STD_HEADER + "0,0 1 2\n").contains("unexpected '2'"));
+	}
+
+	@Test
+	public void rejectsBadCages() {
+		assertTrue(rejectedKiller(KILLER_HEADER + "3\n").contains("no cells"));
+		assertTrue(rejectedKiller(KILLER_HEADER + "3 0,4\n").contains("outside"));
+		assertTrue(rejectedKiller(KILLER_HEADER + "3 0,0 0,1\n7 0,1\n").contains("already in a cage"));
+		assertTrue(rejectedKiller(KILLER_HEADER + "3 0,0 0,\n").contains("expected a number"));
+		assertTrue(rejectedKiller("4\n1 2 3 4\n").contains("expected a number"));
+	}
+
+	@Test
+	public void rejectsWrongCageCount() {
+		String message = rejectedKiller(KILLER_HEADER + "3 0,0 0,1\n");
+		assertTrue(message, message.contains("expected 2 cages, got 1"));
+		message = rejectedKiller(KILLER_HEADER + "3 0,0 0,1\n7 1,0 1,1\n5 2,0 2,1\n");
+		assertTrue(message, message.startsWith("test.in: line 6, column 1: more cages than the 2 declared"));
+		assertTrue(rejectedKiller(STD_HEADER + "-1\n").contains("must not be negative"));
+	}
+
+	@Test
+	public void reportsFileLineAndColumn() {
+		String message = rejectedStd(STD_HEADER + "0,0 1\n1,9 2\n");
+		assertTrue(message, message.startsWith("test.in: line 4, column 3: "));
+		message = rejectedStd("4\n1 2 3\n");
+		assertTrue(message, message.startsWith("test.in: line 2, column 1: "));
+	}
+
+	@Test
+	public void dropsOversizedBuffers() throws IOException {
+		// a small grid padded with blank lines past the largest kept buffer
+		byte[] data = new byte[GridFileParser.MAX_KEPT_BUFFER + 1];
+		Arrays.fill(data, (byte) '\n');
+		byte[] header = (STD_HEADER + "0,0 1\n").getBytes(StandardCharsets.US_ASCII);
+		System.arraycopy(header, 0, data, 0, header.length);
+		File file = folder.newFile("large.in");
+		Files.write(file.toPath(), data);
+
+		StdSudokuGrid grid = new StdSudokuGrid();
+		grid.initGrid(file.getPath());
+		assertEquals(1, grid.grid[0][0]);
+		assertTrue(GridFileParser.keptBufferSize() <= GridFileParser.MAX_KEPT_BUFFER);
+	}
+} // end of class GridFileParserTest
@@ -0,0 +1,112 @@
+package server;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.After;
+import org.junit.Test;
+
+import solver.DancingLinksSolver;
+
+/**
+ * Sends puzzles to a server on a free port and checks the status of each
+ * answer. Malformed puzzles must get 400, never 500.
+ */
+public class SolveServerTest {
+
+	private static final String STD_4 = "4\n1 2 3 4\n0,0 2\n0,1 1\n1,1 3\n1,2 2\n2,3 4\n3,0 1\n";
+
+	private SolveServer server;
+
+	private SolveServer start(int maxRequestBytes) throws IOException {
+		server = new SolveServer("sudoku", DancingLinksSolver::new);
+		server.setMaxConcurrent(1);
+		server.setMaxRequestBytes(maxRequestBytes);
+		server.start(new InetSocketAddress("127.0.0.1", 0));
+		return server;
+	}
+
+	@After
+	public void stop() {
+		if (server != null)
+			server.stop(0);
+	}
+
+	// status of a POST of the body to /solve with the query, or none.
+	private int post(String query, String body) throws IOException {
+		InetSocketAddress address = server.getAddress();
+		URL url = new URL("http://127.0.0.1:" + address.getPort() + "/solve" + (query == null ? "" : "?" + query));
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		try {
+			connection.setRequestMethod("POST");
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.US_ASCII));
+			}
+			int status = connection.getResponseCode();
+			// drain the answer so the connection can be reused
+			InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			if (in != null) {
+				try (InputStream answer = in) {
+					ByteArrayOutputStream ignored = new ByteArrayOutputStream();
+					byte[] buffer = new byte[4096];
+					for (int read; (read = answer.read(buffer)) > 0;)
+						ignored.write(buffer, 0, read);
+				}
+			}
+			return status;
+		} finally {
+			connection.disconnect();
+		}
+	}
+
+	// a grid file of an empty grid of the size.
+	private static String emptyGrid(int size) {
+		StringBuilder builder = new StringBuilder().append(size).append('\n');
+		for (int i = 1; i <= size; i++)
+			builder.append(i).append(i < size ? " " : "\n");
+		return builder.toString();
+	}
+
+	@Test
+	public void solvesPuzzles() throws IOException {
+		start(1 << 20);
+		assertEquals(200, post(null, STD_4));
+		assertEquals(200, post(null, "1.3..2.44.2..3.1\n"));
+	}
+
+	@Test
+	public void rejectsMalformedPuzzles() throws IOException {
+		start(1 << 20);
+		// sizes that would allocate a huge grid or index out of the valid numbers
+		assertEquals(400, post(null, "30000\n1 2 3\n0,0 1\n"));
+		assertEquals(400, post(null, "9\n1 2 3\n0,0 1\n"));
+		assertEquals(400, post(null, "4\n1 2 3 4\n0,4 1\n"));
+		assertEquals(400, post(null, "4\n1 2 3 4\n0,0 5\n"));
+		assertEquals(400, post(null, "9;10\n"));
+		assertEquals(400, post(null, "1.3..2.44.2..3\n"));
+		assertEquals(400, post("timeout=soon", STD_4));
+	}
+
+	@Test
+	public void rejectsLargeRequests() throws IOException {
+		start(16);
+		assertEquals(413, post(null, STD_4));
+	}
+
+	@Test
+	public void stopsAtTheDeadline() throws IOException {
+		start(1 << 20);
+		// the empty grid takes more nodes than the solver visits between two
+		// reads of the clock, so a deadline already past stops it
+		assertEquals(504, post("timeout=0", emptyGrid(25)));
+	}
+}
@@ -0,0 +1,67 @@
+package solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import grid.KillerSudokuGrid;
+
+/**
+ * Looks up cage combinations, and checks that a cage with a long enumeration
+ * is given up once the limit of the solve is reached.
+ */
+public class CageCombinationTableTest {
+
+	// a limit already reached.
+	private static SearchLimit cancelled() {
+		SearchLimit limit = SearchLimit.nodes(SearchLimit.NONE);
+		limit.cancel();
+		return limit;
+	}
+
+	@Test
+	public void findsCombinations() {
+		CageCombinationTable table = CageCombinationTable.forValidNumbers(TestGrids.numbers(9));
+		// 1 + 2 + 4 is the only way to make 7 with three cells
+		CageCombinationTable.CageCandidates cage = table.forCage(7, 3);
+		assertEquals(1, cage.combinationCount());
+		assertEquals(0b1011L, cage.candidates(0));
+		assertEquals(0b1010L, cage.candidates(0b1));
+		// 17 with two cells is 8 + 9
+		assertEquals(0b110000000L, table.forCage(17, 2).candidates(0));
+		assertEquals(0L, table.forCage(18, 2).candidates(0));
+	}
+
+	@Test
+	public void stopsLongEnumerations() {
+		CageCombinationTable table = CageCombinationTable.forValidNumbers(TestGrids.numbers(64));
+		// half of 1..64 adding up to half their sum, far too many to enumerate
+		assertNull(table.forCage(1040, 32, cancelled()));
+		// a short enumeration never reads the limit
+		assertNotNull(table.forCage(3, 2, cancelled()));
+	}
+
+	@Test
+	public void stoppedEnumerationAbortsSolve() throws IOException {
+		KillerSudokuGrid grid = new KillerSudokuGrid();
+		grid.initEmptyGrid(64, TestGrids.numbers(64));
+		int[] cells = new int[32];
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = i;
+		}
+		grid.addCage(1040 + 1, cells);
+
+		KillerAdvancedSolver solver = new KillerAdvancedSolver();
+		assertEquals(SolveResult.ABORTED, solver.solve(grid, cancelled()));
+		PropagatingSolver propagating = new PropagatingSolver(new KillerBackTrackingSolver());
+		assertEquals(SolveResult.ABORTED, propagating.solve(grid, cancelled()));
+		assertFalse(propagating.getPropagatedCells() > 0);
+		assertTrue(grid.grid[0][0] == 0);
+	}
+} // end of class CageCombinationTableTest
@@ -0,0 +1,114 @@
+package solver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import grid.KillerSudokuGrid;
+import grid.StdSudokuGrid;
+
+/**
+ * Propagates the sample games, checking that every value placed agrees with
+ * the solution found by search.
+ */
+public class ConstraintPropagatorTest {
+
+	// propagates the game and compares every filled cell with its solution.
+	private static int propagateAndCompare(String name, boolean killer, SudokuSolver solver) throws IOException {
+		StdSudokuGrid solved = killer ? TestGrids.loadKiller(name) : TestGrids.loadStd(name);
+		assertTrue(name, solver.solve(solved));
+
+		StdSudokuGrid grid = killer ? TestGrids.loadKiller(name) : TestGrids.loadStd(name);
+		grid.rebuildMasks();
+		int filled = new ConstraintPropagator().propagate(grid, new SolverStats());
+		assertTrue(name, filled >= 0);
+		for (int row = 0; row < grid.size; row++) {
+			for (int col = 0; col < grid.size; col++) {
+				if (grid.grid[row][col] != 0)
+					assertEquals(name + " " + row + "," + col, solved.grid[row][col], grid.grid[row][col]);
+			}
+		}
+		return filled;
+	}
+
+	@Test
+	public void placesOnlyForcedValues() throws IOException {
+		for (String name : new String[] { "easy-std-44-01", "easy-std-99-01", "hard-std-99-01", "hard-std-99-02" }) {
+			propagateAndCompare(name, false, new DancingLinksSolver());
+		}
+		for (String name : new String[] { "easy-killer-44-01", "easy-killer-99-02", "easy-killer-99-03" }) {
+			propagateAndCompare(name, true, new KillerAdvancedSolver());
+		}
+	}
+
+	@Test
+	public void solvesEasyGamesWithoutSearch() throws IOException {
+		StdSudokuGrid grid = TestGrids.loadStd("easy-std-99-01");
+		PropagatingSolver solver = new PropagatingSolver(new DancingLinksSolver());
+		assertTrue(solver.solve(grid));
+		assertTrue(grid.validate());
+		assertTrue(ConstraintPropagator.isComplete(grid));
+		assertEquals(0, solver.getStats().nodes);
+	}
+
+	@Test
+	public void findsContradictions() throws IOException {
+		// 3 and 4 in column 2 leave no value for the cell at 0,2
+		StdSudokuGrid grid = new StdSudokuGrid();
+		grid.initEmptyGrid(4, new int[] { 1, 2, 3, 4 });
+		grid.setValue(0, 0, 1);
+		grid.setValue(0, 1, 2);
+		grid.setValue(1, 2, 3);
+		grid.setValue(2, 2, 4);
+		assertEquals(ConstraintPropagator.CONTRADICTION, new ConstraintPropagator().propagate(grid, new SolverStats()));
+	}
+	@Test
+	public void checksOpenCageTotals() throws IOException {
+		// propagation alone fills the grid, the open cage included
+		KillerSudokuGrid grid = TestGrids.openCageGrid(0);
+		PropagatingSolver solver = new PropagatingSolver(new KillerAdvancedSolver());
+		assertTrue(solver.solve(grid));
+		assertNull(grid.findViolation());
+		assertEquals(0, solver.getStats().nodes);
+
+		// one more than the values left for the cage can add up to
+		grid = TestGrids.openCageGrid(1);
+		int[][] before = TestGrids.copyOf(grid.grid);
+		assertEquals(ConstraintPropagator.CONTRADICTION,
+				new ConstraintPropagator().propagate(grid.copy(), new SolverStats()));
+		assertFalse(solver.solve(grid));
+		assertUnchanged(before, grid);
+
+		PortfolioSolver portfolio = new PortfolioSolver(new String[] { "backtracking" },
+				new SudokuSolver[] { new PropagatingSolver(new KillerBackTrackingSolver()) });
+		try {
+			assertFalse(portfolio.solve(grid));
+			assertUnchanged(before, grid);
+		} finally {
+			portfolio.shutdown();
+		}
+	}
+
+	@Test
+	public void leavesGridUnchangedWithoutSolution() throws IOException {
+		// propagation fills some cells, then the limit stops the search
+		StdSudokuGrid grid = TestGrids.loadStd("hard-std-99-02");
+		int[][] before = TestGrids.copyOf(grid.grid);
+		PropagatingSolver solver = new PropagatingSolver(new BackTrackingSolver());
+		assertEquals(SolveResult.ABORTED, solver.solve(grid, SearchLimit.nodes(5)));
+		assertTrue(solver.getPropagatedCells() > 0);
+		assertUnchanged(before, grid);
+	}
+
+	private static void assertUnchanged(int[][] before, StdSudokuGrid grid) {
+		for (int row = 0; row < before.length; row++) {
+			assertArrayEquals("row " + row, before[row], grid.grid[row]);
+		}
+	}
+} // end of class ConstraintPropagatorTest
@@ -0,0 +1,73 @@
+package solver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import grid.StdSudokuGrid;
+
+/**
+ * Checks that the parallel search finds the same solutions as the sequential
+ * one, with small split depths so even 9x9 puzzles make several subproblems.
+ */
+public class DancingLinksSolverTest {
+
+	private static DancingLinksSolver parallel(int splitDepth) {
+		DancingLinksSolver solver = new DancingLinksSolver();
+		solver.setParallelism(3);
+		solver.setSplitDepth(splitDepth);
+		return solver;
+	}
+
+	@Test
+	public void parallelMatchesSequential() throws IOException {
+		for (String name : new String[] { "easy-std-99-01", "hard-std-99-01", "hard-std-99-02", "hard-std-99-03",
+				"hard-std-99-04" }) {
+			StdSudokuGrid sequential = TestGrids.loadStd(name);
+			assertTrue(name, new DancingLinksSolver().solve(sequential));
+
+			for (int splitDepth = 1; splitDepth <= 3; splitDepth++) {
+				StdSudokuGrid grid = TestGrids.loadStd(name);
+				assertTrue(name, parallel(splitDepth).solve(grid));
+				for (int row = 0; row < grid.size; row++) {
+					assertArrayEquals(name + " row " + row, sequential.grid[row], grid.grid[row]);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void parallelSolvesEmptyGrids() throws IOException {
+		for (int size : new int[] { 4, 9, 16 }) {
+			StdSudokuGrid grid = TestGrids.emptyStd(size);
+			assertTrue("size " + size, parallel(8).solve(grid));
+			assertTrue("size " + size, grid.validate());
+		}
+	}
+
+	@Test
+	public void parallelStopsAtSolutionLimit() throws IOException {
+		DancingLinksSolver solver = parallel(2);
+		solver.setSolutionLimit(2);
+		assertTrue(solver.solve(TestGrids.emptyStd(4)));
+		assertEquals(2, solver.getSolutionCount());
+	}
+
+	@Test
+	public void parallelProvesNoSolution() throws IOException {
+		// 3 and 4 in column 2 leave no value for the cell at 0,2
+		StdSudokuGrid grid = TestGrids.emptyStd(4);
+		grid.setValue(0, 0, 1);
+		grid.setValue(0, 1, 2);
+		grid.setValue(1, 2, 3);
+		grid.setValue(2, 2, 4);
+		DancingLinksSolver solver = parallel(2);
+		assertFalse(solver.solve(grid));
+		assertEquals(0, solver.getSolutionCount());
+	}
+} // end of class DancingLinksSolverTest
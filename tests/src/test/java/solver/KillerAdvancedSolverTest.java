@@ -0,0 +1,76 @@
+package solver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import grid.KillerSudokuGrid;
+
+/**
+ * Solves the Killer sample games with both models and checks that a search
+ * stopped by its limit leaves the grid as it was.
+ */
+public class KillerAdvancedSolverTest {
+
+	@Test
+	public void solvesSampleGames() throws IOException {
+		for (String name : new String[] { "easy-killer-44-01", "easy-killer-99-02", "easy-killer-99-03" }) {
+			KillerSudokuGrid grid = TestGrids.loadKiller(name);
+			assertTrue(name, new KillerAdvancedSolver().solve(grid));
+			assertTrue(name, grid.validate());
+		}
+	}
+
+	// a solver that only checks the cages as a filter, placing values on the
+	// grid as it searches.
+	private static KillerAdvancedSolver filterModel() {
+		KillerAdvancedSolver solver = new KillerAdvancedSolver();
+		solver.setCombinationRowFactor(0);
+		return solver;
+	}
+
+	@Test
+	public void abortedSearchLeavesGridUnchanged() throws IOException {
+		for (KillerAdvancedSolver solver : new KillerAdvancedSolver[] { new KillerAdvancedSolver(), filterModel() }) {
+			KillerSudokuGrid grid = TestGrids.loadKiller("easy-killer-99-03");
+			int[][] before = TestGrids.copyOf(grid.grid);
+
+			assertEquals(SolveResult.ABORTED, solver.solve(grid, SearchLimit.nodes(5)));
+			for (int row = 0; row < before.length; row++) {
+				assertArrayEquals("row " + row, before[row], grid.grid[row]);
+			}
+		}
+	}
+
+	@Test
+	public void filterModelSolves() throws IOException {
+		KillerSudokuGrid grid = TestGrids.loadKiller("easy-killer-99-02");
+		KillerAdvancedSolver solver = filterModel();
+		assertTrue(solver.solve(grid));
+		assertTrue(grid.validate());
+		// the filter model checks the cages during the search
+		assertTrue(solver.getStats().constraintChecks > 0);
+	}
+	@Test
+	public void parallelSolvesBothModels() throws IOException {
+		for (KillerAdvancedSolver solver : new KillerAdvancedSolver[] { new KillerAdvancedSolver(), filterModel() }) {
+			solver.setParallelism(3);
+			solver.setSplitDepth(2);
+			KillerSudokuGrid grid = TestGrids.loadKiller("easy-killer-99-02");
+			assertTrue(solver.solve(grid));
+			assertTrue(grid.validate());
+
+			// stopped early, the workers leave the grid as it was
+			grid = TestGrids.loadKiller("easy-killer-99-02");
+			int[][] before = TestGrids.copyOf(grid.grid);
+			assertEquals(SolveResult.ABORTED, solver.solve(grid, SearchLimit.nodes(5)));
+			for (int row = 0; row < before.length; row++) {
+				assertArrayEquals("row " + row, before[row], grid.grid[row]);
+			}
+		}
+	}
+} // end of class KillerAdvancedSolverTest
@@ -0,0 +1,45 @@
+package solver;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import grid.KillerSudokuGrid;
+
+/**
+ * Solves the Killer sample games, and grids with an open cage, whose sum only
+ * the cage bounds can check.
+ */
+public class KillerBackTrackingSolverTest {
+
+	@Test
+	public void solvesSampleGames() throws IOException {
+		for (String name : new String[] { "easy-killer-44-01", "easy-killer-99-02", "easy-killer-99-03" }) {
+			KillerSudokuGrid grid = TestGrids.loadKiller(name);
+			assertTrue(name, new KillerBackTrackingSolver().solve(grid));
+			assertNull(name, grid.findViolation());
+		}
+	}
+
+	@Test
+	public void checksOpenCageTotals() throws IOException {
+		KillerSudokuGrid grid = TestGrids.openCageGrid(0);
+		KillerSudokuGrid.CagePair cage = grid.cagePairList.get(0);
+		assertTrue(CageCombinationTable.forValidNumbers(grid.validNumbers).forCage(cage.total, cage.size).isOpen());
+		assertTrue(new KillerBackTrackingSolver().solve(grid));
+		assertNull(grid.findViolation());
+
+		// one more than the values left for the cage can add up to
+		grid = TestGrids.openCageGrid(1);
+		int[][] before = TestGrids.copyOf(grid.grid);
+		assertFalse(new KillerBackTrackingSolver().solve(grid));
+		for (int row = 0; row < before.length; row++) {
+			assertArrayEquals("row " + row, before[row], grid.grid[row]);
+		}
+	}
+} // end of class KillerBackTrackingSolverTest
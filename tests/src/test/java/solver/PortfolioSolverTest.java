@@ -0,0 +1,45 @@
+package solver;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import grid.StdSudokuGrid;
+
+/**
+ * Races two backtracking solvers, and checks that together they stay within
+ * the node budget of the solve.
+ */
+public class PortfolioSolverTest {
+
+	private final PortfolioSolver portfolio = new PortfolioSolver(new String[] { "first", "second" },
+			new SudokuSolver[] { new BackTrackingSolver(), new BackTrackingSolver() });
+
+	@After
+	public void shutdown() {
+		portfolio.shutdown();
+	}
+
+	@Test
+	public void solvesWithWinner() throws IOException {
+		StdSudokuGrid grid = TestGrids.loadStd("hard-std-99-02");
+		assertEquals(SolveResult.SOLVED, portfolio.solve(grid, SearchLimit.timeout(60_000_000_000L)));
+		assertTrue(grid.validate());
+		assertTrue(portfolio.getWinner() != null);
+	}
+
+	@Test
+	public void membersShareNodeBudget() throws IOException {
+		long budget = 1000;
+		SearchLimit limit = SearchLimit.nodes(budget);
+		assertEquals(SolveResult.ABORTED, portfolio.solve(TestGrids.loadStd("hard-std-99-02"), limit));
+		// each member can overshoot by one batch, 1/64 of the budget rounded
+		// down to a power of two
+		assertTrue("nodes " + limit.getNodes(), limit.getNodes() <= budget + 2 * 8);
+		assertTrue("nodes " + limit.getNodes(), limit.getNodes() >= budget);
+	}
+} // end of class PortfolioSolverTest
@@ -0,0 +1,86 @@
+package solver;
+
+import java.io.IOException;
+
+import grid.KillerSudokuGrid;
+import grid.StdSudokuGrid;
+
+/**
+ * Grids shared by the solver tests: the sample games, read from the directory
+ * in the sudoku.games property, and empty grids built in memory.
+ */
+final class TestGrids {
+
+	private static final String GAMES_DIR = System.getProperty("sudoku.games", "../src/sampleGames");
+
+	private TestGrids() {
+	}
+
+	static StdSudokuGrid loadStd(String name) throws IOException {
+		StdSudokuGrid grid = new StdSudokuGrid();
+		grid.initGrid(GAMES_DIR + "/" + name + ".in");
+		return grid;
+	}
+
+	static KillerSudokuGrid loadKiller(String name) throws IOException {
+		KillerSudokuGrid grid = new KillerSudokuGrid();
+		grid.initGrid(GAMES_DIR + "/" + name + ".in");
+		return grid;
+	}
+
+	// the valid numbers 1 to size.
+	static int[] numbers(int size) {
+		int[] numbers = new int[size];
+		for (int i = 0; i < size; i++) {
+			numbers[i] = i + 1;
+		}
+		return numbers;
+	}
+
+	static StdSudokuGrid emptyStd(int size) throws IOException {
+		StdSudokuGrid grid = new StdSudokuGrid();
+		grid.initEmptyGrid(size, numbers(size));
+		return grid;
+	}
+
+	/**
+	 * A 25x25 Killer grid over a solved standard grid. Cells 8 to 17 of row 0
+	 * form one cage, whose total is off by the given amount. Every other cell is
+	 * a cage of its own. The ten-cell cage has too many combinations to
+	 * enumerate, so it is open. Its first eight cells are filled, which keeps
+	 * searches short.
+	 */
+	static KillerSudokuGrid openCageGrid(int totalOffset) throws IOException {
+		int size = 25;
+		StdSudokuGrid solution = emptyStd(size);
+		new DancingLinksSolver().solve(solution);
+
+		KillerSudokuGrid grid = new KillerSudokuGrid();
+		grid.initEmptyGrid(size, numbers(size));
+		int[] cells = new int[10];
+		int total = totalOffset;
+		for (int i = 0; i < cells.length; i++) {
+			cells[i] = 8 + i;
+			total += solution.grid[0][8 + i];
+		}
+		grid.addCage(total, cells);
+		for (int row = 0; row < size; row++) {
+			for (int col = 0; col < size; col++) {
+				if (row != 0 || col < 8 || col >= 18)
+					grid.addCage(solution.grid[row][col], new int[] { row * size + col });
+			}
+		}
+		for (int col = 8; col < 16; col++) {
+			grid.setValue(0, col, solution.grid[0][col]);
+		}
+		return grid;
+	}
+
+	static int[][] copyOf(int[][] grid) {
+		int[][] copy = new int[grid.length][];
+		for (int i = 0; i < grid.length; i++) {
+			copy[i] = grid[i].clone();
+		}
+		return copy;
+	}
+} // end of class TestGrids